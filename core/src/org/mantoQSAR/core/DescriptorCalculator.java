@@ -0,0 +1,212 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mantoQSAR.core.descriptor.DescriptorGroup;
+import org.mantoQSAR.core.descriptor.HarmonicDescriptorGroup;
+import org.mantoQSAR.core.descriptor.PatchDescriptorGroup;
+import org.mantoQSAR.core.descriptor.PlaneDescriptorGroup;
+import org.mantoQSAR.core.descriptor.ShapeDescriptorGroup;
+import org.mantoQSAR.core.descriptor.SphereDescriptorGroup;
+import org.mantoQSAR.core.descriptor.SurfaceDescriptorGroup;
+import org.mantoQSAR.core.math.Vector;
+import org.mantoQSAR.core.util.ColorStatic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* descriptor calculation for molecules given with their inputs. All state is
+* passed in, intermediate results are kept in the caches of the molecule, so
+* observations can be calculated concurrently and without an open project.
+*/
+public final class DescriptorCalculator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptorCalculator.class);
+
+    // orientations used by sets following sets without own orientation
+    static final int DEFAULT_ORIENTATION = 120;
+
+    private DescriptorCalculator() {
+    }
+
+    /*
+    * orientations of sets selecting their own orientation, equal counts share
+    * their vectors. null for sets using the orientation of a previous set and
+    * for sets with hierarchical search and harmonic sets, which choose their
+    * directions themselves.
+    */
+    public static List<List<Double[]>> getOrientation(List<DescriptorSet> descriptorSet) {
+
+        List<List<Double[]>> orientation = new ArrayList<>();
+        Map<Integer, List<Double[]>> sphere = new HashMap<>();
+        for (DescriptorSet ds : descriptorSet) {
+            if (ds.getProjection() != null && ds.getProjection().getSelectIO() == 1
+                    && !ds.getProjection().isHierarchicalSearch() && !"DescrHarmonic".equals(ds.getName())) {
+                orientation.add(sphere.computeIfAbsent(ds.getProjection().orientation, Vector::calcSphere));
+            } else {
+                orientation.add(null);
+            }
+        }
+        return orientation;
+    }
+
+    /*
+    * set whose resulting orientation is used by set i: i for sets selecting
+    * their own orientation, the last of those before i for the other sets and
+    * -1 if there is none and the default orientations are used
+    */
+    public static int getOrientationSource(List<DescriptorSet> descriptorSet, int i) {
+
+        for (int j = i; j >= 0; j--) {
+            DescriptorSet ds = descriptorSet.get(j);
+            if (ds.getProjection() != null && ds.getProjection().getSelectIO() == 1) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /*
+    * plan of the intermediate results shared by the descriptor sets
+    */
+    public static DescriptorPlan getPlan(DescriptorContext entry, List<DescriptorSet> descriptorSet,
+                                         List<List<Double[]>> orientation) {
+
+        DescriptorPlan plan = DescriptorPlan.of(entry.getMolecule(), descriptorSet, orientation, entry.getIonicStrength());
+        logger.debug("descriptor plan \n" + plan.toString());
+        return plan;
+    }
+
+    /*
+    * descriptor groups of all descriptor sets for one observation. Sets with
+    * selectIO other than 1 use the orientation chosen by the previous set.
+    */
+    public static List<DescriptorGroup> calculateEntry(int observationID, Molecule molecule,
+                                                       ObservationSet observationSet, List<DescriptorSet> descriptorSet) {
+
+        List<DescriptorGroup> dGroup = new ArrayList<>();
+
+        List<Double[]> sphereP = Vector.calcSphere(DEFAULT_ORIENTATION);
+
+        List<List<Double[]>> orientation = DescriptorCalculator.getOrientation(descriptorSet);
+        DescriptorContext entry = new DescriptorContext(observationID, -1, molecule, observationSet, null);
+
+        // intermediate results shared by the descriptor sets
+        DescriptorCalculator.getPlan(entry, descriptorSet, orientation).execute();
+
+        for (int i = 0; i < descriptorSet.size(); i++) {
+            logger.info("calculating desriptor set " + i);
+
+            DescriptorContext context = entry.withDescriptorSet(i, descriptorSet.get(i));
+
+            if (descriptorSet.get(i).getProjection() != null) {
+
+                if (descriptorSet.get(i).getProjection().getSelectIO() == 1) {
+                    sphereP = orientation.get(i);
+
+                    DescriptorGroup dg = DescriptorCalculator.calculate(context, sphereP);
+                    dGroup.add(dg);
+                    sphereP = dg.getVector();
+
+                } else {
+
+                    System.out.println(ColorStatic.BLUE + "Using orientation identified by previous descriptor set." + ColorStatic.RESET);
+                    DescriptorGroup dg = DescriptorCalculator.calculate(context, sphereP);
+                    dGroup.add(dg);
+                }
+            } else {
+                logger.info("Descriptor set without orientation setting.");
+                DescriptorGroup dg = DescriptorCalculator.calculate(context, null);
+                dGroup.add(dg);
+            }
+        }
+        molecule.clearSurface();
+        return dGroup;
+    }
+
+    /*
+    * descriptor group of the context's descriptor set, calculated with the
+    * given orientations. Errors are reported and leave the placeholder values.
+    */
+    public static DescriptorGroup calculate(DescriptorContext context, List<Double[]> vector) {
+
+        DescriptorGroup group;
+
+        switch (context.getDescriptorSet().getName()) {
+            case "DescrPlane":
+                System.out.println(ColorStatic.BLUE + "Calculating plane descriptors." + ColorStatic.RESET);
+                group = new PlaneDescriptorGroup(context);
+                group.setVector(vector);
+                break;
+
+            case "DescrPatch":
+                System.out.println(ColorStatic.BLUE + "Calculating patch descriptors." + ColorStatic.RESET);
+                group = new PatchDescriptorGroup(context);
+                group.setVector(vector);
+                break;
+
+            case "DescrSphere":
+                System.out.println(ColorStatic.BLUE + "Calculating sphere descriptors." + ColorStatic.RESET);
+                group = new SphereDescriptorGroup(context);
+                group.setVector(vector);
+                break;
+
+            case "DescrHarmonic":
+                System.out.println(ColorStatic.BLUE + "Calculating harmonic descriptors." + ColorStatic.RESET);
+                group = new HarmonicDescriptorGroup(context);
+                if (vector != null) {
+                    group.setVector(vector);
+                }
+                break;
+
+            case "DescrSurface":
+                System.out.println(ColorStatic.BLUE + "Calculating surface descriptors." + ColorStatic.RESET);
+                group = new SurfaceDescriptorGroup(context);
+                break;
+
+            case "DescrGeo":
+                System.out.println(ColorStatic.BLUE + "Calculating shape descriptors." + ColorStatic.RESET);
+                group = new ShapeDescriptorGroup(context);
+                break;
+
+            default:
+                logger.error("Descriptor type could not be identified.");
+                return null;
+        }
+
+        try {
+            group.calcDescriptor();
+        } catch (Exception e) {
+            String file = (context.getObservationSet() != null) ? context.getObservationSet().getFile() : "";
+            System.out.println(ColorStatic.RED + "Could not calculate " + context.getDescriptorSet().getName()
+                    + " for observation " + file + ColorStatic.RESET);
+            System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
+        }
+        return group;
+    }
+}
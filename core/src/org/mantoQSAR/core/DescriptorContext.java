@@ -0,0 +1,109 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core;
+
+import org.mantoQSAR.core.util.Projection;
+
+/*
+* inputs of one descriptor group: the molecule with its caches of
+* intermediate results, the observation with its conditions and the
+* descriptor set. Descriptor groups created with a context do not look up
+* the open project, so molecules can be calculated outside of Screen.
+* The observation set may be null, default conditions are used then.
+*/
+public final class DescriptorContext {
+
+    private final int observationID;
+    private final int descriptorID;
+    private final Molecule molecule;
+    private final ObservationSet observationSet;
+    private final DescriptorSet descriptorSet;
+
+    public DescriptorContext(int observationID, int descriptorID, Molecule molecule,
+                             ObservationSet observationSet, DescriptorSet descriptorSet) {
+
+        if (molecule == null) {
+            throw new IllegalArgumentException("Descriptor context without molecule.");
+        }
+        this.observationID = observationID;
+        this.descriptorID = descriptorID;
+        this.molecule = molecule;
+        this.observationSet = observationSet;
+        this.descriptorSet = descriptorSet;
+    }
+
+    /*
+    * context of an observation and descriptor set of the open project
+    */
+    public static DescriptorContext of(int observationID, int descriptorID) {
+
+        Screen screen = Screen.getInstance();
+        return new DescriptorContext(observationID, descriptorID, screen.getMolecule(observationID),
+                screen.getObservationSet(observationID), screen.getDescriptorSet(descriptorID));
+    }
+
+    /*
+    * same molecule and observation with another descriptor set
+    */
+    public DescriptorContext withDescriptorSet(int descriptorID, DescriptorSet descriptorSet) {
+        return new DescriptorContext(observationID, descriptorID, molecule, observationSet, descriptorSet);
+    }
+
+    public int getObservationID() {
+        return observationID;
+    }
+
+    public int getDescriptorID() {
+        return descriptorID;
+    }
+
+    public Molecule getMolecule() {
+        return molecule;
+    }
+
+    public ObservationSet getObservationSet() {
+        return observationSet;
+    }
+
+    public DescriptorSet getDescriptorSet() {
+        return descriptorSet;
+    }
+
+    /*
+    * ionic strength of the observation conditions in mM, the default of
+    * Projection if the observation or its ionic strength is not given
+    */
+    public double getIonicStrength() {
+        return DescriptorContext.getIonicStrength(observationSet);
+    }
+
+    public static double getIonicStrength(ObservationSet observationSet) {
+
+        if (observationSet == null || observationSet.getCondition() == null
+                || observationSet.getCondition().getIonicStrength() == null) {
+            return Projection.DEFAULT_IONIC_STRENGTH;
+        }
+        return observationSet.getCondition().getIonicStrength();
+    }
+}
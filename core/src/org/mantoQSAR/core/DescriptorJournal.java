@@ -0,0 +1,348 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core;
+
+import com.google.gson.Gson;
+import flexjson.JSONDeserializer;
+import flexjson.JSONSerializer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mantoQSAR.core.descriptor.DescriptorGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* append-only log of calculated descriptor groups, one line per observation
+* and descriptor set, keyed by the observation name and a hash of the
+* descriptor set and observation conditions. Records are written as they are
+* calculated and synced to disk in batches; after the calculation the project
+* descriptors are written once and the journal is deleted. A torn last line
+* after a crash is skipped when the journal is read.
+*/
+public class DescriptorJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptorJournal.class);
+
+    private final File file;
+
+    // records and time between syncs to disk
+    private int syncCount = 16;
+    private long syncInterval = 1000L;
+
+    private FileOutputStream stream = null;
+    private Writer writer = null;
+    private int pending = 0;
+    private long lastSync = 0L;
+
+    public static class Record {
+
+        private String observation;
+        private int descriptorID;
+        private String settings;
+        private DescriptorGroup group;
+
+        public Record() {
+        }
+
+        public Record(String observation, int descriptorID, String settings, DescriptorGroup group) {
+            this.observation = observation;
+            this.descriptorID = descriptorID;
+            this.settings = settings;
+            this.group = group;
+        }
+
+        public String getObservation() {
+            return observation;
+        }
+
+        public void setObservation(String observation) {
+            this.observation = observation;
+        }
+
+        public int getDescriptorID() {
+            return descriptorID;
+        }
+
+        public void setDescriptorID(int descriptorID) {
+            this.descriptorID = descriptorID;
+        }
+
+        public String getSettings() {
+            return settings;
+        }
+
+        public void setSettings(String settings) {
+            this.settings = settings;
+        }
+
+        public DescriptorGroup getGroup() {
+            return group;
+        }
+
+        public void setGroup(DescriptorGroup group) {
+            this.group = group;
+        }
+    }
+
+    public DescriptorJournal(File file) {
+        this.file = file;
+    }
+
+    /*
+    * name identifying an observation in the journal
+    */
+    public static String getObservationKey(ObservationSet observationSet) {
+
+        if (observationSet.getName() != null) {
+            return observationSet.getName();
+        }
+        return observationSet.getFile();
+    }
+
+    /*
+    * hash of the descriptor set and the conditions of the observation, records
+    * are only used while both are unchanged
+    */
+    public static String getSettingsKey(DescriptorSet descriptorSet, ObservationSet observationSet) {
+
+        Gson gson = new Gson();
+        String settings = gson.toJson(descriptorSet) + "|"
+                + ((observationSet == null) ? "" : gson.toJson(observationSet.getCondition()));
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest(settings.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            logger.error(ex.getMessage());
+            return Integer.toHexString(settings.hashCode());
+        }
+    }
+
+    /*
+    * key of all descriptor groups of an observation, stored with the project
+    * descriptors to reuse complete entries
+    */
+    public static String getEntryKey(ObservationSet observationSet, List<DescriptorSet> descriptorSet) {
+
+        StringBuilder sb = new StringBuilder(DescriptorJournal.getObservationKey(observationSet));
+        for (DescriptorSet ds : descriptorSet) {
+            sb.append("|").append(DescriptorJournal.getSettingsKey(ds, observationSet));
+        }
+        return sb.toString();
+    }
+
+    private static String getRecordKey(String observation, int descriptorID, String settings) {
+        return observation + "|" + descriptorID + "|" + settings;
+    }
+
+    /*
+    * records of the journal by observation, descriptor set and settings, later
+    * records replace earlier ones
+    */
+    public Map<String, DescriptorGroup> read() {
+
+        Map<String, DescriptorGroup> record = new HashMap<>();
+        if (!file.exists()) {
+            return record;
+        }
+
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    Record r = new JSONDeserializer<Record>().deserialize(line, Record.class);
+                    record.put(DescriptorJournal.getRecordKey(r.getObservation(), r.getDescriptorID(), r.getSettings()),
+                            r.getGroup());
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Descriptor journal " + file + " could not be read. " + ex.getMessage());
+        }
+
+        if (skipped > 0) {
+            logger.warn(skipped + " incomplete records in descriptor journal " + file + " skipped.");
+        }
+        logger.info(record.size() + " records read from descriptor journal " + file);
+        return record;
+    }
+
+    /*
+    * descriptor groups of an observation if the journal holds all of them,
+    * null otherwise
+    */
+    public static List<DescriptorGroup> getEntry(Map<String, DescriptorGroup> record, ObservationSet observationSet,
+                                                 List<DescriptorSet> descriptorSet) {
+
+        String observation = DescriptorJournal.getObservationKey(observationSet);
+        List<DescriptorGroup> entry = new ArrayList<>();
+
+        for (int i = 0; i < descriptorSet.size(); i++) {
+            DescriptorGroup g = record.get(DescriptorJournal.getRecordKey(observation, i,
+                    DescriptorJournal.getSettingsKey(descriptorSet.get(i), observationSet)));
+            if (g == null) {
+                return null;
+            }
+            entry.add(g);
+        }
+        return entry;
+    }
+
+    /*
+    * appends the descriptor groups of an observation
+    */
+    public synchronized void append(ObservationSet observationSet, List<DescriptorSet> descriptorSet,
+                                    List<DescriptorGroup> entry) {
+
+        String observation = DescriptorJournal.getObservationKey(observationSet);
+
+        try {
+            if (writer == null) {
+                file.getParentFile().mkdirs();
+                stream = new FileOutputStream(file, true);
+                writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+                lastSync = System.currentTimeMillis();
+
+                // a record torn by an interrupted run is ended, so that it is skipped on reading
+                if (!DescriptorJournal.endsWithNewline(file)) {
+                    writer.write("\n");
+                }
+            }
+
+            for (int i = 0; i < entry.size() && i < descriptorSet.size(); i++) {
+                if (entry.get(i) == null) {
+                    continue;
+                }
+                Record r = new Record(observation, i, DescriptorJournal.getSettingsKey(descriptorSet.get(i), observationSet),
+                        entry.get(i));
+                writer.write(new JSONSerializer().exclude("molecule", "structure", "description").deepSerialize(r));
+                writer.write("\n");
+                pending++;
+            }
+
+            if (pending >= syncCount || System.currentTimeMillis() - lastSync >= syncInterval) {
+                this.sync();
+            }
+        } catch (IOException ex) {
+            logger.error("Descriptor journal " + file + " could not be written. " + ex.getMessage());
+        }
+    }
+
+    private static boolean endsWithNewline(File file) throws IOException {
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() == 0) {
+                return true;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /*
+    * writes buffered records and forces them to disk
+    */
+    public synchronized void sync() throws IOException {
+
+        if (writer == null) {
+            return;
+        }
+        writer.flush();
+        stream.getChannel().force(false);
+        pending = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    public synchronized void close() {
+
+        if (writer == null) {
+            return;
+        }
+        try {
+            this.sync();
+            writer.close();
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+        }
+        writer = null;
+        stream = null;
+    }
+
+    /*
+    * removes the journal after its records were written to the project descriptors
+    */
+    public synchronized void delete() {
+
+        this.close();
+        if (file.exists() && !file.delete()) {
+            logger.warn("Descriptor journal " + file + " could not be deleted.");
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getSyncCount() {
+        return syncCount;
+    }
+
+    public void setSyncCount(int syncCount) {
+        this.syncCount = syncCount;
+    }
+
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    public void setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+}
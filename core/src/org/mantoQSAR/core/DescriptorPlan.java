@@ -0,0 +1,257 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.mantoQSAR.core.util.Projection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* intermediate results needed by the descriptor sets of one observation as a
+* graph of named nodes: surface, property sources, property maps, planes and
+* patch masks. Nodes with the same name are added once, so results used by
+* several descriptor sets are calculated once. Nodes store their results in
+* the caches of Molecule, where the descriptor groups find them.
+* Nodes run after their dependencies; nodes of the same level run in parallel.
+*/
+public class DescriptorPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptorPlan.class);
+
+    // medium of plane descriptors, see PlaneDescriptorGroup
+    private static final double PLANE_DIELECTRIC_CONSTANT = 78.0;
+
+    private final Map<String, Node> node = new LinkedHashMap<>();
+
+    private static class Node {
+
+        final String name;
+        final List<String> dependency;
+        final Runnable task;
+
+        Node(String name, List<String> dependency, Runnable task) {
+            this.name = name;
+            this.dependency = dependency;
+            this.task = task;
+        }
+    }
+
+    /*
+    * adds a node unless a node with this name exists, dependencies have to be
+    * added before
+    */
+    public void add(String name, Runnable task, String... dependency) {
+
+        for (String d : dependency) {
+            if (!node.containsKey(d)) {
+                throw new IllegalArgumentException("Node " + name + " depends on unknown node " + d + ".");
+            }
+        }
+        node.putIfAbsent(name, new Node(name, Arrays.asList(dependency), task));
+    }
+
+    public boolean contains(String name) {
+        return node.containsKey(name);
+    }
+
+    public int size() {
+        return node.size();
+    }
+
+    /*
+    * nodes grouped by level, level 0 without dependencies
+    */
+    public List<List<String>> getLevel() {
+
+        Map<String, Integer> level = new HashMap<>();
+        List<List<String>> byLevel = new ArrayList<>();
+
+        // insertion order is a topological order, dependencies are added first
+        for (Node n : node.values()) {
+            int l = 0;
+            for (String d : n.dependency) {
+                l = Math.max(l, level.get(d) + 1);
+            }
+            level.put(n.name, l);
+
+            while (byLevel.size() <= l) {
+                byLevel.add(new ArrayList<>());
+            }
+            byLevel.get(l).add(n.name);
+        }
+        return byLevel;
+    }
+
+    public void execute() {
+
+        long t0 = System.currentTimeMillis();
+
+        for (List<String> level : this.getLevel()) {
+            level.parallelStream().forEach((name) -> {
+                try {
+                    node.get(name).task.run();
+                } catch (RuntimeException e) {
+                    // the descriptor group calculates the result again and reports the error
+                    logger.warn("Plan node " + name + " failed. " + e.getMessage());
+                }
+            });
+        }
+
+        logger.info("descriptor plan with " + node.size() + " nodes executed in "
+                + (System.currentTimeMillis() - t0) + " ms");
+    }
+
+    /*
+    * plan for the descriptor sets of an observation. orientation holds the
+    * orientation vectors of each set, null for sets without own orientations.
+    */
+    public static DescriptorPlan of(Molecule m, List<DescriptorSet> descriptorSet,
+                                    List<List<Double[]>> orientation, Double ionicStrength) {
+
+        DescriptorPlan plan = new DescriptorPlan();
+        plan.add("surface", m::getSurfacePoints);
+
+        List<DescriptorSet.Surface> defaultMedium = new ArrayList<>();
+        List<DescriptorSet.Surface> planeMedium = new ArrayList<>();
+
+        for (DescriptorSet ds : descriptorSet) {
+            if (ds.getSurface() == null || "DescrGeo".equals(ds.getName())) {
+                continue;
+            }
+
+            String property = ds.getSurface().getProperty();
+            plan.add("source|" + property, () -> m.getPropertySource(property));
+
+            if ("DescrPlane".equals(ds.getName())) {
+                if (ionicStrength != null) {
+                    planeMedium.add(ds.getSurface());
+                }
+            } else {
+                defaultMedium.add(ds.getSurface());
+            }
+        }
+
+        plan.addPropertyMaps(m, "default", defaultMedium,
+                Projection.DEFAULT_DIELECTRIC_CONSTANT, Projection.DEFAULT_IONIC_STRENGTH);
+        if (ionicStrength != null) {
+            plan.addPropertyMaps(m, "plane", planeMedium, PLANE_DIELECTRIC_CONSTANT, ionicStrength);
+        }
+
+        for (int i = 0; i < descriptorSet.size(); i++) {
+
+            DescriptorSet ds = descriptorSet.get(i);
+            List<Double[]> vector = (i < orientation.size()) ? orientation.get(i) : null;
+            if (vector == null || ds.getProjection() == null) {
+                continue;
+            }
+
+            DescriptorSet.Projection p = ds.getProjection();
+
+            switch (ds.getName()) {
+                case "DescrPlane":
+                case "DescrSphere":
+                    plan.addPlanes(m, vector, p.getSize(), p.getDensity(), p.getDistance());
+                    break;
+
+                case "DescrPatch":
+                    // the reference planes of the patches only need normal and center, their points are not generated
+                    plan.add("patch|" + plan.getVectorKey(vector) + "|" + p.getSize(),
+                            () -> vector.parallelStream().forEach((v) -> m.getSurfacePatchIO(v, p.getSize())),
+                            "surface");
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        return plan;
+    }
+
+    /*
+    * fused projection of all maps of a medium, then the remaining maps one by one
+    */
+    private void addPropertyMaps(Molecule m, String medium, List<DescriptorSet.Surface> setting,
+                                 double dC, double iS) {
+
+        if (setting.isEmpty()) {
+            return;
+        }
+
+        List<String> dependency = new ArrayList<>();
+        dependency.add("surface");
+        for (DescriptorSet.Surface s : setting) {
+            if (!dependency.contains("source|" + s.getProperty())) {
+                dependency.add("source|" + s.getProperty());
+            }
+        }
+
+        String fused = "maps|" + medium;
+        this.add(fused, () -> m.prefetchPropertyMaps(setting, dC, iS), dependency.toArray(new String[0]));
+
+        for (DescriptorSet.Surface s : setting) {
+            String name = "map|" + medium + "|" + s.getProperty() + "|" + s.getMapFunctionName() + "|"
+                    + s.getTolerance() + "|" + s.getBackend() + "|" + s.getTheta() + "|" + s.getGridSpacing();
+            this.add(name, () -> m.getPropertyMap(s, dC, iS), fused);
+        }
+    }
+
+    /*
+    * planes of all orientations, sets using the same orientations and plane
+    * settings share the node. Returns the node name.
+    */
+    private String addPlanes(Molecule m, List<Double[]> vector, Double size, Double density, Double distance) {
+
+        String name = "planes|" + this.getVectorKey(vector) + "|" + size + "|" + density + "|" + distance;
+        this.add(name, () -> vector.parallelStream().forEach((v) -> m.getPlane(v, size, density, distance).getPlane()));
+        return name;
+    }
+
+    /*
+    * identity of an orientation list, equal vectors give equal keys
+    */
+    private String getVectorKey(List<Double[]> vector) {
+
+        int h = 1;
+        for (Double[] v : vector) {
+            h = 31 * h + Arrays.hashCode(v);
+        }
+        return vector.size() + "#" + Integer.toHexString(h);
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder();
+        List<List<String>> level = this.getLevel();
+        for (int l = 0; l < level.size(); l++) {
+            sb.append("level ").append(l).append(": ").append(String.join(", ", level.get(l))).append("\n");
+        }
+        return sb.toString();
+    }
+}
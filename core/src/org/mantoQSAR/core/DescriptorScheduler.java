@@ -0,0 +1,221 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.mantoQSAR.core.descriptor.DescriptorGroup;
+import org.mantoQSAR.core.math.Vector;
+import org.mantoQSAR.core.util.ColorStatic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* descriptor calculation of many observations on one work-stealing pool.
+* Each observation is split into tasks: surface and plan first, then one task
+* per descriptor set, started as soon as the set it takes its orientation
+* from is finished. Orientations and plan nodes are evaluated by parallel
+* streams inside these tasks, so idle threads take over the orientations of
+* large molecules while small ones are done. At most twice as many
+* observations as threads are in progress, their surfaces and intermediate
+* results are dropped when they are finished.
+*/
+public class DescriptorScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptorScheduler.class);
+
+    private final ForkJoinPool pool;
+
+    public DescriptorScheduler(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /*
+    * descriptor groups of all observations, empty lists for inactive ones.
+    * done is called with the observation index and its groups as soon as an
+    * observation is finished, from the thread that finished it. Failed
+    * observations are logged and not passed to done; the remaining ones are
+    * calculated before an ExecutionException reports the failures.
+    */
+    public List<List<DescriptorGroup>> calculate(List<Molecule> molecule, List<ObservationSet> observationSet,
+                                                 List<DescriptorSet> descriptorSet,
+                                                 BiConsumer<Integer, List<DescriptorGroup>> done)
+            throws InterruptedException, ExecutionException {
+        return this.calculate(molecule, observationSet, descriptorSet, null, done);
+    }
+
+    /*
+    * as above, observations with a non-null entry in previous, e.g. taken from
+    * an earlier calculation, are not calculated again and not passed to done
+    */
+    public List<List<DescriptorGroup>> calculate(List<Molecule> molecule, List<ObservationSet> observationSet,
+                                                 List<DescriptorSet> descriptorSet,
+                                                 List<List<DescriptorGroup>> previous,
+                                                 BiConsumer<Integer, List<DescriptorGroup>> done)
+            throws InterruptedException, ExecutionException {
+
+        long t0 = System.currentTimeMillis();
+
+        // large molecules first, they take longest and should not form the tail
+        List<Integer> order = IntStream.range(0, molecule.size()).boxed()
+                .sorted(Comparator.comparingInt((Integer i) -> DescriptorScheduler.getSize(molecule.get(i))).reversed())
+                .collect(Collectors.toList());
+
+        List<CompletableFuture<List<DescriptorGroup>>> entry = new ArrayList<>(molecule.size());
+        for (int i = 0; i < molecule.size(); i++) {
+            entry.add(null);
+        }
+
+        Semaphore window = new Semaphore(2 * pool.getParallelism());
+
+        for (int i : order) {
+            ObservationSet os = (i < observationSet.size()) ? observationSet.get(i) : null;
+
+            if (os != null && !os.isActive()) {
+                entry.set(i, CompletableFuture.completedFuture(new ArrayList<>()));
+                continue;
+            }
+
+            if (previous != null && i < previous.size() && previous.get(i) != null) {
+                entry.set(i, CompletableFuture.completedFuture(previous.get(i)));
+                continue;
+            }
+
+            window.acquire();
+            DescriptorContext context = new DescriptorContext(i, -1, molecule.get(i), os, null);
+            entry.set(i, this.submit(context, descriptorSet, done).whenComplete((g, e) -> window.release()));
+        }
+
+        List<List<DescriptorGroup>> output = new ArrayList<>(molecule.size());
+        List<Throwable> failure = new ArrayList<>();
+        for (CompletableFuture<List<DescriptorGroup>> e : entry) {
+            try {
+                output.add(e.get());
+            } catch (ExecutionException ex) {
+                output.add(null);
+                failure.add(ex.getCause());
+            }
+        }
+
+        if (!failure.isEmpty()) {
+            ExecutionException ex = new ExecutionException(failure.size() + " of " + molecule.size()
+                    + " observations failed", failure.get(0));
+            failure.stream().skip(1).forEach(ex::addSuppressed);
+            throw ex;
+        }
+
+        logger.info(molecule.size() + " observations calculated in " + (System.currentTimeMillis() - t0)
+                + " ms on " + pool.getParallelism() + " threads");
+        return output;
+    }
+
+    private CompletableFuture<List<DescriptorGroup>> submit(DescriptorContext entry, List<DescriptorSet> descriptorSet,
+                                                          BiConsumer<Integer, List<DescriptorGroup>> done) {
+
+        Molecule m = entry.getMolecule();
+        List<List<Double[]>> orientation = DescriptorCalculator.getOrientation(descriptorSet);
+
+        // all descriptor sets depend on the surface and the shared intermediate results
+        CompletableFuture<Void> prepared = CompletableFuture.runAsync(() -> {
+            m.getSurfacePoints();
+            DescriptorCalculator.getPlan(entry, descriptorSet, orientation).execute();
+        }, pool);
+
+        List<CompletableFuture<DescriptorGroup>> group = new ArrayList<>(descriptorSet.size());
+
+        for (int i = 0; i < descriptorSet.size(); i++) {
+
+            DescriptorContext context = entry.withDescriptorSet(i, descriptorSet.get(i));
+            int source = DescriptorCalculator.getOrientationSource(descriptorSet, i);
+
+            CompletableFuture<List<Double[]>> vector;
+            if (descriptorSet.get(i).getProjection() == null) {
+                vector = prepared.thenApply((v) -> null);
+            } else if (source == i) {
+                List<Double[]> own = orientation.get(i);
+                vector = prepared.thenApply((v) -> own);
+            } else if (source < 0) {
+                vector = prepared.thenApply((v) -> Vector.calcSphere(DescriptorCalculator.DEFAULT_ORIENTATION));
+            } else {
+                vector = group.get(source).thenApply((g) -> (g == null) ? null : g.getVector());
+            }
+
+            group.add(vector.thenApplyAsync((v) -> DescriptorCalculator.calculate(context, v), pool));
+        }
+
+        return CompletableFuture.allOf(group.toArray(new CompletableFuture<?>[0])).handle((v, e) -> {
+
+            m.clearSurface();
+
+            if (e != null) {
+                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                String name = DescriptorScheduler.getName(entry);
+                logger.error("Descriptor calculation of " + name + " failed", cause);
+                System.out.println(ColorStatic.RED + "Descriptor calculation of " + name + " failed: "
+                        + cause.getMessage() + ColorStatic.RESET);
+                throw new CompletionException(cause);
+            }
+
+            List<DescriptorGroup> dGroup = new ArrayList<>();
+            for (CompletableFuture<DescriptorGroup> g : group) {
+                dGroup.add(g.join());
+            }
+
+            if (done != null) {
+                done.accept(entry.getObservationID(), dGroup);
+            }
+            return dGroup;
+        });
+    }
+
+    private static String getName(DescriptorContext entry) {
+
+        ObservationSet os = entry.getObservationSet();
+        if (os != null && os.getName() != null) {
+            return "observation " + os.getName();
+        }
+        return "observation " + entry.getObservationID();
+    }
+
+    private static int getSize(Molecule m) {
+        return (m.getStructure() == null) ? 0 : m.getAtomList().size();
+    }
+}
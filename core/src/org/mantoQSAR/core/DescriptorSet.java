@@ -22,9 +22,13 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 
 package org.mantoQSAR.core;
 
+import org.mantoQSAR.core.util.MapFunctions;
 
 public class DescriptorSet {
     
+    public static final String SEARCH_EXHAUSTIVE = "exhaustive"; 
+    public static final String SEARCH_HIERARCHICAL = "hierarchical"; 
+    
     String name = "empty"; 
     Surface surface; 
     Projection projection;
@@ -60,6 +64,11 @@ public void DescriptorSet(){
      Double sizeofsphere; 
      String property;
      int mapfunc; 
+     String mapname; 
+     Double tolerance; 
+     String backend; 
+     Double theta; 
+     Double gridspacing; 
 
         public Surface() {
             this.resolution = 0.1f;
@@ -86,6 +95,80 @@ public void DescriptorSet(){
             this.mapfunc = mapfunc;
         }
 
+        /*
+        * registered name of the map function, given by "mapname" or by the
+        * number "mapfunc" if no name is set
+        */
+        public String getMapFunctionName() {
+            if (mapname == null) {
+                return MapFunctions.getName(mapfunc);
+            }
+            return mapname;
+        }
+
+        public void setMapFunctionName(String mapname) {
+            this.mapname = mapname;
+        }
+
+        /*
+        * relative size of neglected contributions for screened map functions,
+        * 0 or not set for the exact sum
+        */
+        public double getTolerance() {
+            if (tolerance == null) {
+                return 0.0;
+            }
+            return tolerance;
+        }
+
+        public void setTolerance(Double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        /*
+        * evaluation of the projection: "direct" (default), "blocked" for SIMD
+        * friendly loops, or "tree" for map functions 0 and 5
+        */
+        public String getBackend() {
+            if (backend == null) {
+                return "direct";
+            }
+            return backend;
+        }
+
+        public void setBackend(String backend) {
+            this.backend = backend;
+        }
+
+        /*
+        * opening angle of the tree backend
+        */
+        public double getTheta() {
+            if (theta == null) {
+                return 0.3;
+            }
+            return theta;
+        }
+
+        public void setTheta(Double theta) {
+            this.theta = theta;
+        }
+
+        /*
+        * spacing in Angstrom of the potential grid the surface map is
+        * interpolated from, 0 or not set to evaluate each surface point
+        */
+        public double getGridSpacing() {
+            if (gridspacing == null) {
+                return 0.0;
+            }
+            return gridspacing;
+        }
+
+        public void setGridSpacing(Double gridSpacing) {
+            this.gridspacing = gridSpacing;
+        }
+
         public float getResolution() {
             return resolution;
         }
@@ -120,10 +203,17 @@ public void DescriptorSet(){
        public Double size;
        public Double distance; 
        public int mapfunc; 
+       public String mapname; 
        public int orientation; 
        public String select; 
        public String selectFunc; 
        public int selectIO; 
+       public Double gridspacing; 
+       public String search; 
+       public Integer coarse; 
+       public Integer refine; 
+       public Integer beam; 
+       public Integer degree; 
        
         public Projection(){
             this.selectIO = 1;
@@ -185,6 +275,21 @@ public void DescriptorSet(){
             this.mapfunc = mapFunction;
         }
 
+        /*
+        * registered name of the map function, given by "mapname" or by the
+        * number "mapfunc" if no name is set
+        */
+        public String getMapFunctionName() {
+            if (mapname == null) {
+                return MapFunctions.getName(mapfunc);
+            }
+            return mapname;
+        }
+
+        public void setMapFunctionName(String mapname) {
+            this.mapname = mapname;
+        }
+
         public String getSelectID() {
             return select;
         }
@@ -201,6 +306,98 @@ public void DescriptorSet(){
             this.selectFunc = selectFunction;
         }
 
+        /*
+        * spacing in Angstrom of the potential grid plane values are
+        * interpolated from, 0 or not set to evaluate each plane point
+        */
+        public double getGridSpacing() {
+            if (gridspacing == null) {
+                return 0.0;
+            }
+            return gridspacing;
+        }
+
+        public void setGridSpacing(Double gridSpacing) {
+            this.gridspacing = gridSpacing;
+        }
+
+        /*
+        * orientation search of groups selecting an orientation: "exhaustive"
+        * evaluates all orientations, "hierarchical" evaluates the selector on
+        * a coarse direction set and refines around the best candidates
+        */
+        public String getSearch() {
+            if (search == null) {
+                return SEARCH_EXHAUSTIVE;
+            }
+            return search;
+        }
+
+        public void setSearch(String search) {
+            this.search = search;
+        }
+
+        public boolean isHierarchicalSearch() {
+            return SEARCH_HIERARCHICAL.equals(this.getSearch()) && this.selectIO == 1;
+        }
+
+        /*
+        * number of directions of the coarse level
+        */
+        public int getCoarse() {
+            if (coarse == null) {
+                return 32;
+            }
+            return coarse;
+        }
+
+        public void setCoarse(Integer coarse) {
+            this.coarse = coarse;
+        }
+
+        /*
+        * number of refinement levels, the angular step is halved per level
+        */
+        public int getRefine() {
+            if (refine == null) {
+                return 4;
+            }
+            return refine;
+        }
+
+        public void setRefine(Integer refine) {
+            this.refine = refine;
+        }
+
+        /*
+        * number of candidates refined on each level
+        */
+        public int getBeam() {
+            if (beam == null) {
+                return 2;
+            }
+            return beam;
+        }
+
+        public void setBeam(Integer beam) {
+            this.beam = beam;
+        }
+
+        /*
+        * maximum degree of the spherical harmonic expansion of harmonic
+        * descriptor sets
+        */
+        public int getDegree() {
+            if (degree == null) {
+                return 16;
+            }
+            return degree;
+        }
+
+        public void setDegree(Integer degree) {
+            this.degree = degree;
+        }
+
         public int getMapfunc() {
             return mapfunc;
         }
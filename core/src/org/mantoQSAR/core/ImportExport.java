@@ -176,7 +176,8 @@ public class ImportExport {
        
 	JSONSerializer js = new JSONSerializer(); 
         
-        String json = js.exclude("molecule", "structure", "description")
+        // descriptor values are stored in the table, not in the groups
+        String json = js.exclude("molecule", "structure", "description", "group.descriptor", "group.descriptorList")
                        .prettyPrint(true)
                        .deepSerialize(projDescr); 
 	
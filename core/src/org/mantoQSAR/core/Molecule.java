@@ -23,16 +23,32 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 
 package org.mantoQSAR.core;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Chain;
 import org.biojava.nbio.structure.Group;
 import org.biojava.nbio.structure.Structure;
+import org.mantoQSAR.core.math.HarmonicExpansion;
 import org.mantoQSAR.core.math.Plane;
-import org.mantoQSAR.core.util.Isosurface;
+import org.mantoQSAR.core.math.PointSet;
+import org.mantoQSAR.core.util.CellList;
+import org.mantoQSAR.core.util.DirectionIndex;
+import org.mantoQSAR.core.util.DotSurface;
+import org.mantoQSAR.core.util.MapFunction;
+import org.mantoQSAR.core.util.MapFunctions;
+import org.mantoQSAR.core.util.Memoized;
 import org.mantoQSAR.core.util.MoleculeTools;
+import org.mantoQSAR.core.util.PotentialGrid;
 import org.mantoQSAR.core.util.Projection;
+import org.mantoQSAR.core.util.SurfaceCache;
+import org.mantoQSAR.core.util.VersionedMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,26 +61,61 @@ private Structure structure;
 
 private Double ionicStrength = 0.0;
 private Double dielectricConstant = 2.0;
-private List<Double[]> surface;
+// calculated once on first use, parallel descriptor groups share the calculation
+private final Memoized<PointSet> surface;
 private final Double resolution = 0.5; 
+private final Double probeRadius = 1.4; 
+
+// surface values of mapped properties, see getPropertyMap
+private final VersionedMap<double[]> propertyMap = new VersionedMap<>(this::getSurfaceVersion);
+
+// property fields evaluated on grids, see getPotentialGrid
+private final VersionedMap<PotentialGrid> gridMap = new VersionedMap<>(this::getSurfaceVersion);
+
+// intermediate results shared between descriptor sets
+private final VersionedMap<PointSet> sourceMap = new VersionedMap<>(this::getSurfaceVersion);
+private final VersionedMap<Plane> planeMap = new VersionedMap<>(this::getSurfaceVersion);
+private final VersionedMap<boolean[]> patchMap = new VersionedMap<>(this::getSurfaceVersion);
+
+// spherical harmonic expansions of surface properties, see getHarmonicExpansion
+private final VersionedMap<HarmonicExpansion> harmonicMap = new VersionedMap<>(this::getSurfaceVersion);
+
+// surface points by direction from the center, see getSurfaceIndex
+private DirectionIndex surfaceIndex = null;
+private long surfaceIndexVersion = -1;
+
+// nearest surface point index, see getSurfaceCellList
+private CellList surfaceCellList = null;
+private long surfaceCellListVersion = -1;
+
+// directory of cached results on disk, nothing is stored if null
+private String cachePath = null;
 
     public Molecule(){
         
         logger = LoggerFactory.getLogger(Molecule.class);
-        this.surface = new ArrayList<>();
+        this.surface = new Memoized<>(this::calcSurface);
     }
 
     public Structure getStructure() {
         return structure;
     }
 
+    public String getCachePath() {
+        return cachePath;
+    }
+
+    public void setCachePath(String cachePath) {
+        this.cachePath = cachePath;
+    }
+
     public void setStructure(Structure structure) {
-        this.surface.clear();
         this.structure = structure;
+        this.clearSurface();
 
     }
     
-    public List<Double[]> getResiduePosition(String type) {
+    public PointSet getResiduePosition(String type) {
 
         List<Double[]> resPos = new ArrayList<>();
         List<Group> asList = this.getAsList();
@@ -92,7 +143,7 @@ private final Double resolution = 0.5;
                 break;
         }
 
-        return resPos;
+        return PointSet.fromList(resPos);
     }
 
     public List<Double> getHydrophobicityConstant() {
@@ -148,37 +199,323 @@ private final Double resolution = 0.5;
     }
     */
 
-     public List<Double> getOccupancy() {
+     public double[] getOccupancy() {
          // pqr files code atom charge as occupancy
          
-        List<Double> atomValue = new ArrayList<>();
         List<Atom> aList = this.getAtomList(); 
+        double[] atomValue = new double[aList.size()];
         
-        for (Atom a : aList) {
-            atomValue.add(a.getOccupancy());
+        for (int i = 0; i < aList.size(); i++) {
+            atomValue[i] = aList.get(i).getOccupancy();
         }
         return atomValue;
     }
     
-    public List<Double[]> getSurface() {
-
-       if(this.surface.isEmpty()){
-        this.surface = this.calcSurface();
+    /*
+    * source points and values of a surface property, kept until the surface
+    * is cleared; the returned points must not be modified
+    */
+    public PointSet getPropertySource(String property) {
+        
+        if(property == null){
+            return null; 
         }
-        return this.surface; 
-       
+        
+        return this.sourceMap.get(property, this::calcPropertySource); 
+    }
+    
+    private PointSet calcPropertySource(String property) {
+        
+        PointSet source; 
+        switch (property){
+            case "esp":
+                // assumes atom charges to be coded as occupancy value in PQR file 
+                // according to PQR definition
+                source = this.getAtomPosition(); 
+                source.setValue(this.getOccupancy());
+                break;
+                
+            case "hyd":
+                source = this.getResiduePosition("mass"); 
+                source.setValue(PointSet.toArray(this.getHydrophobicityConstant()));
+                break; 
+                
+            default: 
+                logger.error("Property to be mapped in descriptor calculation not identified.");
+                return null;
+        }
+        return source; 
+    }
+    
+    /*
+    * property values projected onto the surface points. Maps are kept until the
+    * surface is cleared and shared between descriptor groups, the returned
+    * array must not be modified.
+    */
+    public double[] getPropertyMap(String property, int mapFunction, double dielectricConstant, double ionicStrength) {
+        return this.getPropertyMap(property, MapFunctions.getName(mapFunction), dielectricConstant, ionicStrength, 
+                new Projection(), 0.0); 
+    }
+    
+    public double[] getPropertyMap(String property, int mapFunction) {
+        return this.getPropertyMap(property, mapFunction, 
+                Projection.DEFAULT_DIELECTRIC_CONSTANT, Projection.DEFAULT_IONIC_STRENGTH); 
+    }
+    
+    /*
+    * property map for the surface settings of a descriptor set, including the
+    * approximation settings of the projection
+    */
+    public double[] getPropertyMap(DescriptorSet.Surface setting, double dielectricConstant, double ionicStrength) {
+        
+        return this.getPropertyMap(setting.getProperty(), setting.getMapFunctionName(), dielectricConstant, ionicStrength, 
+                Molecule.getProjection(setting), setting.getGridSpacing()); 
+    }
+    
+    /*
+    * projection with the approximation settings (tolerance, backend, theta)
+    * of the surface settings
+    */
+    public static Projection getProjection(DescriptorSet.Surface setting) {
+        
+        Projection p = new Projection(setting.getTolerance()); 
+        p.setBackend(setting.getBackend());
+        p.setTheta(setting.getTheta());
+        return p; 
+    }
+    
+    public double[] getPropertyMap(DescriptorSet.Surface setting) {
+        return this.getPropertyMap(setting, Projection.DEFAULT_DIELECTRIC_CONSTANT, Projection.DEFAULT_IONIC_STRENGTH); 
+    }
+    
+    private double[] getPropertyMap(String property, String mapFunction, double dielectricConstant, double ionicStrength, 
+                                    Projection p, double gridSpacing) {
+        
+        String key = Molecule.getPropertyKey(property, mapFunction, dielectricConstant, ionicStrength, p, gridSpacing); 
+        
+        return this.propertyMap.get(key, (k) -> {
+            
+            if(gridSpacing > 0.0){
+                PotentialGrid grid = this.getPotentialGrid(property, mapFunction, dielectricConstant, ionicStrength, 
+                        p, gridSpacing); 
+                return (grid == null) ? null : grid.sample(this.getSurfacePoints()); 
+            }
+            
+            PointSet source = this.getPropertySource(property); 
+            if(source == null){
+                return null; 
+            }
+            
+            return p.calcProjection(this.getSurfacePoints(), source, mapFunction, 
+                    0.0,            // minimum distance
+                    dielectricConstant, ionicStrength); 
+        });
+    }
+    
+    private static String getPropertyKey(String property, String mapFunction, double dielectricConstant, 
+                                         double ionicStrength, Projection p, double gridSpacing) {
+        return property + "|" + mapFunction + "|" + dielectricConstant + "|" + ionicStrength + "|" 
+                + p.getModeKey() + "|" + gridSpacing; 
+    }
+    
+    /*
+    * calculates the property maps of several surface settings together. Maps
+    * of the same property that are summed directly share one pass over the
+    * atom - surface distances; the results are stored as if requested by
+    * getPropertyMap. Other settings are left to getPropertyMap.
+    */
+    public void prefetchPropertyMaps(List<DescriptorSet.Surface> settings, double dielectricConstant, 
+                                     double ionicStrength) {
+        
+        // maps calculated here are stored for this surface version only
+        long version = this.getSurfaceVersion(); 
+        
+        // map function name of each missing map, by property
+        Map<String, Map<String, String>> request = new LinkedHashMap<>(); 
+        
+        for (DescriptorSet.Surface setting : settings) {
+            
+            if (setting == null || setting.getGridSpacing() > 0.0) {
+                continue; 
+            }
+            
+            String name = setting.getMapFunctionName(); 
+            Projection p = Molecule.getProjection(setting); 
+            MapFunction f = MapFunctions.get(name, dielectricConstant, ionicStrength); 
+            if (f == null || !p.isDirect(f)) {
+                continue; 
+            }
+            
+            String key = Molecule.getPropertyKey(setting.getProperty(), name, dielectricConstant, ionicStrength, 
+                    p, setting.getGridSpacing()); 
+            if (!this.propertyMap.containsKey(key)) {
+                request.computeIfAbsent(setting.getProperty(), (k) -> new LinkedHashMap<>()).put(key, name); 
+            }
+        }
+        
+        for (Map.Entry<String, Map<String, String>> e : request.entrySet()) {
+            
+            Map<String, String> group = e.getValue(); 
+            if (group.size() < 2) {
+                continue; 
+            }
+            
+            PointSet source = this.getPropertySource(e.getKey()); 
+            if (source == null || !source.hasValue()) {
+                continue; 
+            }
+            
+            // requests with the same map function next to each other share their kernel values
+            List<String> key = new ArrayList<>(group.keySet()); 
+            key.sort(Comparator.comparing(group::get)); 
+            
+            Map<String, MapFunction> kernel = new HashMap<>(); 
+            MapFunction[] f = new MapFunction[key.size()]; 
+            double[][] value = new double[key.size()][]; 
+            for (int m = 0; m < key.size(); m++) {
+                f[m] = kernel.computeIfAbsent(group.get(key.get(m)), 
+                        (name) -> MapFunctions.get(name, dielectricConstant, ionicStrength)); 
+                value[m] = source.getValue(); 
+            }
+            
+            logger.info("fused projection of " + key.size() + " maps of property " + e.getKey());
+            double[][] map = new Projection().calcProjection(this.getSurfacePoints(), source, value, f, 
+                    0.0);           // minimum distance
+            
+            for (int m = 0; m < key.size(); m++) {
+                this.propertyMap.putIfAbsent(key.get(m), version, map[m]); 
+            }
+        }
+    }
+    
+    /*
+    * property field of the surface settings on a grid covering the surface, 
+    * null if the spacing is not set or the property is unknown
+    */
+    public PotentialGrid getPotentialGrid(DescriptorSet.Surface setting, double dielectricConstant, double ionicStrength) {
+        
+        if(!(setting.getGridSpacing() > 0.0)){
+            return null; 
+        }
+        return this.getPotentialGrid(setting.getProperty(), setting.getMapFunctionName(), dielectricConstant, ionicStrength, 
+                Molecule.getProjection(setting), setting.getGridSpacing()); 
+    }
+    
+    private PotentialGrid getPotentialGrid(String property, String mapFunction, double dielectricConstant, 
+                                           double ionicStrength, Projection p, double gridSpacing) {
+        
+        String key = "property|" + property + "|" + mapFunction + "|" + dielectricConstant + "|" + ionicStrength + "|" 
+                + p.getModeKey() + "|" + gridSpacing; 
+        
+        return this.getPotentialGrid(key, (k) -> {
+            
+            PointSet source = this.getPropertySource(property); 
+            if(source == null){
+                return null; 
+            }
+            return PotentialGrid.around(this.getSurfacePoints(), gridSpacing, source, p, mapFunction, 
+                    0.0,            // minimum distance
+                    dielectricConstant, ionicStrength, gridSpacing); 
+        });
+    }
+    
+    /*
+    * grid stored under key, calculated by grid if not present. Grids are kept
+    * until the surface is cleared and shared between descriptor groups and views.
+    */
+    public PotentialGrid getPotentialGrid(String key, Function<String, PotentialGrid> grid) {
+        return this.gridMap.get(key, grid); 
+    }
+    
+    public HarmonicExpansion getHarmonicExpansion(String key, Function<String, HarmonicExpansion> expansion) {
+        return this.harmonicMap.get(key, expansion); 
+    }
+    
+    public PointSet getSurfacePoints() {
+        return this.surface.get(); 
+    }
+
+    /*
+    * incremented whenever the surface is cleared
+    */
+    public long getSurfaceVersion() {
+        return this.surface.getVersion(); 
+    }
+    
+    public List<Double[]> getSurface() {
+        return this.getSurfacePoints().toList(); 
     }
      
     public void clearSurface(){
         
-        this.surface.clear();
+        this.surface.invalidate();
+        this.propertyMap.clear();
+        this.gridMap.clear();
+        this.sourceMap.clear();
+        this.planeMap.clear();
+        this.patchMap.clear();
+        this.harmonicMap.clear();
+        
+        synchronized(this){
+            this.surfaceIndex = null; 
+            this.surfaceCellList = null; 
+        }
+    }
+    
+    /*
+    * surface points bucketed by direction from the molecule center, used to
+    * select patches without testing every surface point
+    */
+    public synchronized DirectionIndex getSurfaceIndex(){
+        
+        long version = this.getSurfaceVersion(); 
+        if(this.surfaceIndex == null || this.surfaceIndexVersion != version){
+            Double[] cP = MoleculeTools.getCenter(this.getAtomList()); 
+            this.surfaceIndex = new DirectionIndex(this.getSurfacePoints(), new double[]{cP[0], cP[1], cP[2]}); 
+            this.surfaceIndexVersion = version; 
+        }
+        return this.surfaceIndex; 
+    }
+    
+    /*
+    * cell list over the surface points for nearest point queries, built once
+    * per surface and shared by all orientations and descriptor sets
+    */
+    public synchronized CellList getSurfaceCellList(){
+        
+        long version = this.getSurfaceVersion(); 
+        if(this.surfaceCellList == null || this.surfaceCellListVersion != version){
+            this.surfaceCellList = new CellList(this.getSurfacePoints()); 
+            this.surfaceCellListVersion = version; 
+        }
+        return this.surfaceCellList; 
     }
     
-    private List<Double[]> calcSurface(){
-        Isosurface isosurface = new Isosurface();
-        isosurface.setResolution(this.resolution);
+    private PointSet calcSurface(){
+        DotSurface dotSurface = new DotSurface();
+        dotSurface.setResolution(this.resolution);
+        dotSurface.setSizeOfSphere(this.probeRadius);
+
+        if(this.getStructure() == null){
+            return dotSurface.getSurface(this.getStructure());
+        }
+
+        if(this.cachePath == null){
+            return dotSurface.getSurface(this.getStructure());
+        }
 
-        return isosurface.getSurface(this.getStructure());
+        // surfaces are stored by structure hash and surface settings
+        SurfaceCache cache = new SurfaceCache(new File(this.cachePath + "/surface"));
+        String key = SurfaceCache.getKey(this.getStructure(), dotSurface.getResolution(), 
+                dotSurface.getSizeOfSphere(), dotSurface.getTypeOfSurface());
+
+        PointSet cached = cache.get(key);
+        if(cached != null){
+            logger.info("surface with " + cached.size() + " points read from cache");
+            return cached;
+        }
+
+        return cache.put(key, dotSurface.getSurface(this.getStructure()));
     }
     
 
@@ -228,7 +565,7 @@ private final Double resolution = 0.5;
         
     }
     
-    public List<Double[]> getAtomPosition() {
+    public PointSet getAtomPosition() {
         return MoleculeTools.getAtomPosition(this.getAtomList());
     }
 
@@ -254,54 +591,56 @@ private final Double resolution = 0.5;
     
     public List<Double[]> getSurfacePatch(Double[] vector, Double size) {
 
-        List<Double[]> refP = this.getSurface();
-        List<Double[]> surfPart = new ArrayList<>();
-        
-        // calculate a plane, properties not critical, as plane only needed for reference
-        Plane plane = new Plane(this.getAtomList(), vector, 100.0, 5.0, 0.0); 
-        List<Double[]> planeP = plane.getPlane();
-        Projection p = new Projection(); 
-        
-        Double[] dist2plane = p.getAbsDistance(planeP, refP);
-        p = null; 
-       
-        Double minDistVal = 10000.0; 
-        for (int i = 0; i < dist2plane.length; i++) {
-            if(dist2plane[i] < minDistVal){
-                minDistVal = dist2plane[i]; 
-            }
-            if (dist2plane[i] < size) {
-                surfPart.add(refP.get(i));
-            }
-        }
-        
-        return surfPart;
+        PointSet refP = this.getSurfacePoints();
+        return refP.subset(this.getSurfacePatchIO(vector, size)).toList();
     }
     
+    /*
+    * surface points closer than size to the reference plane in direction
+    * vector. Masks are kept until the surface is cleared, the returned array
+    * must not be modified.
+    */
     public boolean[] getSurfacePatchIO(Double[] vector, Double size) {
-
-        List<Double[]> refP = this.getSurface();
-        boolean[] surfPartIO = new boolean[refP.size()];
         
-        // calculate a plane, properties not critical, as plane only needed for reference
-        Plane plane = new Plane(this.getAtomList(), vector, 100.0, 5.0, 0.0); 
-        List<Double[]> planeP = plane.getPlane();
-       
-        Projection p = new Projection(); 
+        String key = Molecule.getVectorKey(vector) + "|" + size; 
         
-        Double[] dist2plane = p.getAbsDistance(planeP, refP);
-        p = null; 
-       
-        for (int i = 0; i < dist2plane.length; i++) {
-
-            if (dist2plane[i] < size) {
-                surfPartIO[i] = true; 
-            }else{
-                surfPartIO[i] = false; 
-            }
-        }
+        return this.patchMap.get(key, (k) -> {
+            
+            PointSet refP = this.getSurfacePoints();
+            boolean[] surfPartIO = new boolean[refP.size()];
 
-        return surfPartIO;
+            // calculate a plane, properties not critical, as plane only needed for reference
+            Plane plane = this.getPlane(vector, 100.0, 5.0, 0.0); 
+            
+            // points of the patch lie less than size below the plane, only 
+            // directions reaching this height are tested
+            DirectionIndex index = this.getSurfaceIndex(); 
+            double[] normal = plane.getNormal(); 
+            double[] pC = plane.getCenter(); 
+            double[] cP = index.getCenter(); 
+            double minProjection = (pC[0] - cP[0]) * normal[0] + (pC[1] - cP[1]) * normal[1] 
+                    + (pC[2] - cP[2]) * normal[2] - size; 
+
+            index.forEachCandidate(normal, minProjection, (i) -> {
+                surfPartIO[i] = plane.distanceToGrid(refP.getX(i), refP.getY(i), refP.getZ(i)) < size; 
+            });
+            return surfPartIO;
+        });
+    }
+    
+    /*
+    * plane in direction vector, shared by all descriptor sets using the same
+    * orientation and plane settings until the surface is cleared
+    */
+    public Plane getPlane(Double[] vector, Double size, Double density, Double distance) {
+        
+        String key = Molecule.getVectorKey(vector) + "|" + size + "|" + density + "|" + distance; 
+        
+        return this.planeMap.get(key, (k) -> new Plane(this.getAtomList(), vector, size, density, distance)); 
+    }
+    
+    private static String getVectorKey(Double[] vector) {
+        return vector[0] + "," + vector[1] + "," + vector[2]; 
     }
 
 }
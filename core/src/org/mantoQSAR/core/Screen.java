@@ -35,12 +35,11 @@ import java.io.FileReader;
 import java.io.Reader;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import org.mantoQSAR.core.descriptor.*;
 import org.mantoQSAR.core.math.Matrix;
 import org.mantoQSAR.core.math.Vector;
@@ -48,6 +47,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.mantoQSAR.core.descriptor.Descriptor;
 import org.mantoQSAR.core.util.ColorStatic;
+import org.mantoQSAR.core.util.DotSurface;
 
 
 public final class Screen {
@@ -67,8 +67,9 @@ public final class Screen {
     
     Boolean idle = true;
     
-    // fixed value for development purpose
-    Integer settingProcessor = 0; // 1 = multi thread; 0 = single thread
+    // observations are calculated on the DescriptorScheduler unless set to single thread
+    Integer settingProcessor = 1; // 1 = multi thread; 0 = single thread
+    Integer settingParallelism = Runtime.getRuntime().availableProcessors(); // threads of the multi thread calculation
     String projectPath;
 
     public static Screen getInstance() {
@@ -118,6 +119,17 @@ public final class Screen {
 
                     descriptorSetList = gson.fromJson(reader, listType);
 
+                    for (DescriptorSet ds : descriptorSetList) {
+                        String type = (ds.getSurface() == null) ? null : ds.getSurface().getTypeOfSurface();
+                        if (!DotSurface.isSupported(type)) {
+                            logger.warn("Surface type " + type + " of descriptor set " + ds.getName()
+                                    + " not supported, descriptors are calculated on the solvent accessible surface.");
+                            System.out.println(ColorStatic.RED + "Surface type " + type + " of descriptor set "
+                                    + ds.getName() + " not supported, the solvent accessible surface is used."
+                                    + ColorStatic.RESET);
+                        }
+                    }
+
                 } catch (FileNotFoundException ex) {
                     logger.error(ex.getMessage());
                 }
@@ -140,15 +152,19 @@ public final class Screen {
                     + "   type of surface \t" + ds.getSurface().getTypeOfSurface() + "\n"
                     + "   size of sphere \t" + ds.getSurface().getSizeOfSphere() + "\n"
                     + "   property \t\t" + ds.surface.getProperty() + "\n"
-                    + "   map function \t" + Integer.toString(ds.surface.mapfunc));
+                    + "   map function \t" + ds.surface.getMapFunctionName() + "\n"
+                    + "   tolerance \t\t" + Double.toString(ds.surface.getTolerance()) + "\n"
+                    + "   backend \t\t" + ds.surface.getBackend() + " (theta " + ds.surface.getTheta() + ")\n"
+                    + "   grid spacing \t" + Double.toString(ds.surface.getGridSpacing()));
             if (ds.projection != null) {
                 System.out.println("projection \n"
                         + "   type \t\t" + ds.projection.getType() + "\n"
                         + "   density \t\t" + ds.projection.density.toString() + "\n"
                         + "   size \t\t" + ds.projection.size.toString() + "\n"
                         + "   distance \t\t" + ds.projection.distance.toString() + "\n"
-                        + "   map function \t" + Integer.toString(ds.projection.mapfunc) + "\n"
-                        + "   orientations \t" + Integer.toString(ds.projection.orientation) + "\n");
+                        + "   map function \t" + ds.projection.getMapFunctionName() + "\n"
+                        + "   orientations \t" + Integer.toString(ds.projection.orientation) + "\n"
+                        + "   grid spacing \t" + Double.toString(ds.projection.getGridSpacing()) + "\n");
             }
             System.out.println("descriptor \n"
                     + "   name \t\t" + ds.descriptor.name);
@@ -205,6 +221,7 @@ public final class Screen {
 
                         // center molecule in coord system
                         m.setIonicStrength(obs.getCondition().ionicStrength);
+                        m.setCachePath(projectPath + "/cache");
                         moleculeList.add(m);
 
                     }
@@ -282,6 +299,8 @@ public final class Screen {
                     
                     try {
                         projectDescriptor.setDescriptorList(processDescriptorsParallel(moleculeList));
+                        exportDescriptorList();
+                        getDescriptorJournal().delete();
 
                         long stopTime = System.currentTimeMillis();
                         long elapsedTime = stopTime - startTime;
@@ -290,13 +309,15 @@ public final class Screen {
                         changes.firePropertyChange(MoleculeStatic.CHANGE_CALC_DESCRIPTOR, null, null);
 
                     } catch (InterruptedException | ExecutionException ex) {
-                        logger.error(ex.getMessage());
+                        // finished observations stay in the journal and are reused by the next calculation
+                        logger.error("Descriptor calculation stopped: " + ex.getMessage());
+                        System.out.println(ColorStatic.RED + "Descriptor calculation stopped: " + ex.getMessage()
+                                + ColorStatic.RESET);
                     }
 
                 } else {
 
                     processDescriptorsSingle(moleculeList);
-                    exportDescriptorList();
                 }
 
             }
@@ -313,217 +334,142 @@ public final class Screen {
         io.exportDescriptorListToJson(this.projectDescriptor, f);
     }
 
+    /*
+    * journal of the running calculation, see DescriptorJournal
+    */
+    public DescriptorJournal getDescriptorJournal() {
+        return new DescriptorJournal(new File(this.projectPath + "/descriptorList.journal"));
+    }
+
+    /*
+    * calculates the observations one after the other. Entries calculated
+    * before for the same observation and settings are taken from the loaded
+    * descriptors or from the journal of an interrupted calculation.
+    */
     public void processDescriptorsSingle(List<Molecule> inputs) {
 
-        int countExist; 
-        if(projectDescriptor.getDescriptorList() != null || !projectDescriptor.getDescriptorList().isEmpty()){
-        countExist = projectDescriptor.getDescriptorList().size(); 
-        System.out.println(ColorStatic.GREEN + "Resuming descriptor calculation for observation " + (countExist) + "." + ColorStatic.RESET) ;
-        }else{
-        countExist = 0; 
-        System.out.println(ColorStatic.PURPLE + "No previously calculated descriptors loaded." + ColorStatic.RESET);
-        }
+        DescriptorJournal journal = this.getDescriptorJournal();
+        Map<String, DescriptorGroup> record = journal.read();
+        int countExist = 0;
 
-        for (int i = countExist; i < inputs.size(); i++) {
+        for (int i = 0; i < inputs.size(); i++) {
 
-            final Boolean active = observationSetList.get(i).isActive();
+            ObservationSet os = observationSetList.get(i);
+            String key = null;
 
             // process your input here and compute the output
             List<DescriptorGroup> dg = new ArrayList<>();
-            if (active == true) {
-                try {
-                    dg = calcDescriptorEntry(i);
-                } catch (Exception e) {
-                    System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
+            if (os.isActive() == true) {
+                key = DescriptorJournal.getEntryKey(os, descriptorSetList);
+                List<DescriptorGroup> previous = this.getPreviousEntry(i, key, record);
+
+                if (previous != null) {
+                    dg = previous;
+                    countExist++;
+                } else {
+                    try {
+                        dg = calcDescriptorEntry(i);
+                        journal.append(os, descriptorSetList, dg);
+                    } catch (Exception e) {
+                        System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
+                        key = null;
+                    }
                 }
             }
             
-            try {
-                projectDescriptor.descriptorList.set(i, dg);
-            } catch (Exception e) {
-                projectDescriptor.descriptorList.add(dg);
-            }
+            projectDescriptor.setEntry(i, dg, key);
             changes.firePropertyChange(MoleculeStatic.CHANGE_CALC_DESCRIPTOR, null, null);
-            exportDescriptorList();
         }
 
+        if (countExist > 0) {
+            System.out.println(ColorStatic.GREEN + countExist + " observations taken from previous calculation." + ColorStatic.RESET);
+        }
+
+        // the journal is merged into the descriptor file
+        exportDescriptorList();
+        journal.delete();
+
         changes.firePropertyChange(MoleculeStatic.CHANGE_CALC_DESCRIPTOR, null, null);
 
     }
 
+    /*
+    * descriptor groups of observation i calculated before with the same
+    * settings, from the project or the journal of an interrupted run
+    */
+    private List<DescriptorGroup> getPreviousEntry(int i, String key, Map<String, DescriptorGroup> record) {
+
+        if (key.equals(projectDescriptor.getEntryKey(i))) {
+            return projectDescriptor.getDescriptorList().get(i);
+        }
+        return DescriptorJournal.getEntry(record, observationSetList.get(i), descriptorSetList);
+    }
+
     public List<List<DescriptorGroup>> processDescriptorsParallel(List<Molecule> inputs)
             throws InterruptedException, ExecutionException {
 
-        int threads = Runtime.getRuntime().availableProcessors();
-        ExecutorService service = Executors.newFixedThreadPool(threads);
+        DescriptorJournal journal = this.getDescriptorJournal();
+        Map<String, DescriptorGroup> record = journal.read();
+        int countExist = 0;
 
-        List<Future<List<DescriptorGroup>>> futures = new ArrayList<>();
-        
+        // entries of the project or the journal with unchanged settings are not calculated again
+        List<List<DescriptorGroup>> previous = new ArrayList<>();
         for (int i = 0; i < inputs.size(); i++) {
-
-            final Boolean active = observationSetList.get(i).isActive();
-
-            final int observationID = i;
-            Callable<List<DescriptorGroup>> callable = new Callable<List<DescriptorGroup>>() {
-
-                @Override
-                public List<DescriptorGroup> call() throws Exception {
-
-                    // process your input here and compute the output
-                    if (active == true) {
-
-                        return calcDescriptorEntry(observationID);
-                    } else {
-                        List<DescriptorGroup> emptyGroup = new ArrayList<>();
-                        return emptyGroup;
-                    }
-                }
-            };
-            futures.add(service.submit(callable));
+            ObservationSet os = observationSetList.get(i);
+            List<DescriptorGroup> dg = null;
+            if (os.isActive() == true) {
+                dg = this.getPreviousEntry(i, DescriptorJournal.getEntryKey(os, descriptorSetList), record);
+            }
+            if (dg != null) {
+                countExist++;
+            }
+            previous.add(dg);
         }
 
-        service.shutdown();
-
-        List<List<DescriptorGroup>> outputs = new ArrayList<>();
-        for (Future<List<DescriptorGroup>> future : futures) {
-            outputs.add(future.get());
+        if (countExist > 0) {
+            System.out.println(ColorStatic.GREEN + countExist + " observations taken from previous calculation." + ColorStatic.RESET);
         }
 
-        changes.firePropertyChange(MoleculeStatic.CHANGE_CALC_DESCRIPTOR, null, null);
+        DescriptorScheduler scheduler = new DescriptorScheduler(settingParallelism);
+        try {
+            List<List<DescriptorGroup>> output = scheduler.calculate(inputs, observationSetList, descriptorSetList, previous,
+                    (observationID, dGroup) -> {
+                        if (!dGroup.isEmpty()) {
+                            journal.append(observationSetList.get(observationID), descriptorSetList, dGroup);
+                        }
+                        changes.firePropertyChange(MoleculeStatic.CHANGE_CALC_DESCRIPTOR, null, null);
+                    });
 
-        return outputs;
+            List<String> entryKey = new ArrayList<>();
+            for (int i = 0; i < output.size(); i++) {
+                entryKey.add(output.get(i).isEmpty() ? null
+                        : DescriptorJournal.getEntryKey(observationSetList.get(i), descriptorSetList));
+            }
+            projectDescriptor.setEntryKey(entryKey);
+            return output;
+        } finally {
+            scheduler.shutdown();
+            journal.close();
+            changes.firePropertyChange(MoleculeStatic.CHANGE_CALC_DESCRIPTOR, null, null);
+        }
     }
 
     
     public List<DescriptorGroup> calcDescriptorEntry(int observationID) {
 
-        List<DescriptorGroup> dGroup = new ArrayList<>();
-
-        List<Double[]> sphereP = Vector.calcSphere(120);
-
-        for (int i = 0; i < descriptorSetList.size(); i++) {
-            logger.info("calculating desriptor set " + i);
-
-            if (descriptorSetList.get(i).getProjection() != null) {
-
-                
-                if (descriptorSetList.get(i).getProjection().getSelectIO() == 1) {
-                    sphereP = Vector.calcSphere(descriptorSetList.get(i).getProjection().orientation);
-
-                    DescriptorGroup dg = this.calcDescriptorGroup(observationID, i, sphereP);
-                    dGroup.add(dg);
-                    sphereP = dg.getVector();
-
-                } else {
-
-                    System.out.println(ColorStatic.BLUE + "Using orientation identified by previous descriptor set." + ColorStatic.RESET);
-                    DescriptorGroup dg = this.calcDescriptorGroup(observationID, i, sphereP);
-                    dGroup.add(dg);
-                }
-            } else {
-                logger.info("Descriptor set without orientation setting.");
-                DescriptorGroup dg = this.calcDescriptorGroup(observationID, i, null);
-                dGroup.add(dg);
-            }
-        }
-        this.getMolecule(observationID).clearSurface();
-        return dGroup;
-
+        return DescriptorCalculator.calculateEntry(observationID, this.getMolecule(observationID),
+                this.getObservationSet(observationID), descriptorSetList);
     }
 
     
     public DescriptorGroup calcDescriptorGroup(int observationID, int descriptorID, List<Double[]> vector) {
 
-        DescriptorSet descriptorSet = this.descriptorSetList.get(descriptorID);
-
-        switch (descriptorSet.getName()) {
-            case "DescrPlane":
-                System.out.println(ColorStatic.BLUE + "Calculating plane descriptors." + ColorStatic.RESET);
-
-                PlaneDescriptorGroup planeDescr = new PlaneDescriptorGroup(observationID, descriptorID);
-                planeDescr.setVector(vector);
-                try {
-                    planeDescr.calcDescriptor();
-                } catch (Exception e) {
-                    System.out.println(e.getMessage());
-                    System.out.println(ColorStatic.RED + "Could not calculate " + this.getDescriptorSet(descriptorID).getName()
-                            + " for observation " + this.getObservationSet(observationID).getFile() + ColorStatic.RESET);
-                    System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
-                }
-                return planeDescr;
-
-            case "DescrPatch":
-                System.out.println(ColorStatic.BLUE + "Calculating patch descriptors." + ColorStatic.RESET);
-
-                PatchDescriptorGroup patchDescr = new PatchDescriptorGroup(observationID, descriptorID);
-                patchDescr.setVector(vector);
-                try {
-                    patchDescr.calcDescriptor();
-                } catch (Exception e) {
-
-                    System.out.println(ColorStatic.RED + "Could not calculate " + this.getDescriptorSet(descriptorID).getName()
-                            + " for observation " + this.getObservationSet(observationID).getFile() + ColorStatic.RESET);
-                    System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
-                }
-
-                return patchDescr;
-
-            case "DescrSphere":
-                System.out.println(ColorStatic.BLUE + "Calculating sphere descriptors." + ColorStatic.RESET);
-
-                SphereDescriptorGroup sphereDescr = new SphereDescriptorGroup(observationID, descriptorID);
-                sphereDescr.setVector(vector);
-                try {
-                    sphereDescr.calcDescriptor();
-                } catch (Exception e) {
-
-                    System.out.println(ColorStatic.RED + "Could not calculate " + this.getDescriptorSet(descriptorID).getName()
-                            + " for observation " + this.getObservationSet(observationID).getFile() + ColorStatic.RESET);
-                    System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
-                }
-
-                return sphereDescr;
-
-            case "DescrSurface":
-                System.out.println(ColorStatic.BLUE + "Calculating surface descriptors." + ColorStatic.RESET);
-
-                SurfaceDescriptorGroup surfDescr = new SurfaceDescriptorGroup(observationID, descriptorID);
-                try {
-                    surfDescr.calcDescriptor();
-                } catch (Exception e) {
-
-                    System.out.println(ColorStatic.RED + "Could not calculate " + this.getDescriptorSet(descriptorID).getName()
-                            + " for observation " + this.getObservationSet(observationID).getFile() + ColorStatic.RESET);
-                    System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
-                }
-
-                return surfDescr;
-
-            case "DescrGeo":
-                System.out.println(ColorStatic.BLUE + "Calculating shape descriptors." + ColorStatic.RESET);
-                ShapeDescriptorGroup shapeDescr;
-                shapeDescr = new ShapeDescriptorGroup(observationID, descriptorID);
-
-                try {
-                    shapeDescr.calcDescriptor();
-                } catch (Exception e) {
-
-                    System.out.println(ColorStatic.RED + "Could not calculate " + this.getDescriptorSet(descriptorID).getName()
-                            + " for observation " + this.getObservationSet(observationID).getFile() + ColorStatic.RESET);
-                    System.out.println(ColorStatic.RED + e.getMessage() + ColorStatic.RESET);
-                }
-
-                return shapeDescr;
-
-            default:
-                logger.error("Descriptor type could not be identified.");
-                return null;
-        }
+        return DescriptorCalculator.calculate(DescriptorContext.of(observationID, descriptorID), vector);
     }
 
     public void showDescriptor() {
-        int m = projectDescriptor.descriptorList.size();
-        int n = projectDescriptor.descriptorList.get(0).size();
+        int m = projectDescriptor.getEntryCount();
+        int n = projectDescriptor.getEntry(0).size();
         int nD = 0;
 
         System.out.println(ColorStatic.RED + " Descriptors calculated: \n"
@@ -533,7 +479,7 @@ public final class Screen {
         for (int j = 0; j < n; j++) {
             System.out.print(j + ": ");
 
-            List<Descriptor> dl = projectDescriptor.descriptorList.get(0).get(j).getDescriptor();
+            List<Descriptor> dl = projectDescriptor.getEntry(0).get(j).getDescriptor();
             for (Descriptor dl1 : dl) {
                 nD++;
                 System.out.print(" " + dl1.getValue());
@@ -579,103 +525,30 @@ public final class Screen {
     
     private void calcDescriptorMatrix() {
 
-        if (projectDescriptor.descriptorList == null || projectDescriptor.descriptorList.isEmpty()) {
+        if (projectDescriptor.getEntryCount() == 0) {
             this.descriptorMatrix = new Matrix(3, 3);
             return;
         }
 
-        Thread t2 = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-
-                int m = projectDescriptor.descriptorList.size();
-                int nG = projectDescriptor.descriptorList.get(0).size();
-                int nD = 0;
-
-                for (int j = 0; j < nG; j++) {
-                    DescriptorGroup dg = projectDescriptor.descriptorList.get(0).get(j);
-                    nD = nD + dg.getDescriptor().size();
-                }
-                descriptorMatrix = new Matrix(m, nD);
-                int ni;
-                int mi = 0;
-
-                for (int i = 0; i < m; i++) {
-                    ObservationSet os = observationSetList.get(i);
-                    List<DescriptorGroup> ds = projectDescriptor.descriptorList.get(i);
-                    ni = 0;
-
-                    for (DescriptorGroup dg : ds) {
-
-                        for (Descriptor descriptor : dg.getDescriptor()) {
-                            descriptorMatrix.data[mi][ni] = descriptor.getValue();
-                            ni++;
-                        }
-                    }
-                    mi++;
-                }
-            }
-        });
-        t2.start();
-        try {
-            t2.join();
-        } catch (InterruptedException ex) {
-            logger.error(ex.getMessage());
-        }
+        // rows are shared with the descriptor table
+        this.descriptorMatrix = projectDescriptor.getTable().toMatrix();
     }
 
     private void calcModelDescriptorMatrix() {
 
-        if (projectDescriptor.descriptorList == null || projectDescriptor.descriptorList.isEmpty()) {
+        if (projectDescriptor.getEntryCount() == 0) {
             System.out.println(ColorStatic.RED + "Error: projectDescriptor.descriptorList is Empty.");
             return;
         }
 
-        Thread t2 = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-
-                int m = modelObservationCount();
-                int nG = projectDescriptor.descriptorList.get(0).size();
-                int nD = 0;
-
-                for (int j = 0; j < nG; j++) {
-                    DescriptorGroup dg = projectDescriptor.descriptorList.get(0).get(j);
-                    nD = nD + dg.getDescriptor().size();
-                }
-
-                modelDescriptorMatrix = new Matrix(m, nD);
-                int ni;
-                int mi = 0;
-
-                for (int i = 0; i < observationSetList.size(); i++) {
-                    ObservationSet os = observationSetList.get(i);
-                    List<DescriptorGroup> ds = projectDescriptor.descriptorList.get(i);
-
-                    if (os.isActive() == true & os.isPredict() == false) {
-
-                        ni = 0;
-
-                        for (DescriptorGroup dg : ds) {
-
-                            for (Descriptor descriptor : dg.getDescriptor()) {
-                                modelDescriptorMatrix.data[mi][ni] = descriptor.getValue();
-                                ni++;
-                            }
-                        }
-                        mi++;
-                    }
-                }
-            }
-        });
-        t2.start();
-        try {
-            t2.join();
-        } catch (InterruptedException ex) {
-            logger.error(ex.getMessage());
+        boolean[] select = new boolean[observationSetList.size()];
+        for (int i = 0; i < select.length; i++) {
+            ObservationSet os = observationSetList.get(i);
+            select[i] = os.isActive() == true & os.isPredict() == false;
         }
+
+        // copied, the model normalizes and decomposes its matrix
+        this.modelDescriptorMatrix = projectDescriptor.getTable().toMatrix(select);
     }
 
     public Matrix getModelDescriptorMatrix() {
@@ -699,7 +572,7 @@ public final class Screen {
     public DescriptorGroup getDescriptorGroup(int molPos, int descrPos) {
 
         DescriptorGroup dG = null;
-        List<DescriptorGroup> descrGroupList = projectDescriptor.descriptorList.get(molPos);
+        List<DescriptorGroup> descrGroupList = projectDescriptor.getEntry(molPos);
 
         int pos = descrPos;
 
@@ -718,7 +591,7 @@ public final class Screen {
 
     public int getDescriptorPositionInGroup(int molPos, int descrPos) {
 
-        List<DescriptorGroup> descrGroupList = projectDescriptor.descriptorList.get(molPos);
+        List<DescriptorGroup> descrGroupList = projectDescriptor.getEntry(molPos);
 
         int pos = descrPos;
 
@@ -735,51 +608,13 @@ public final class Screen {
 
     private void calcPredictDescriptorMatrix() {
 
-        Thread t2 = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-
-                int m = predictObservationCount();
-                int nG = projectDescriptor.descriptorList.get(0).size();
-                int nD = 0;
-
-                for (int j = 0; j < nG; j++) {
-                    DescriptorGroup dg = projectDescriptor.descriptorList.get(0).get(j);
-                    nD = nD + dg.getDescriptor().size();
-                }
-
-                predictDescriptorMatrix = new Matrix(m, nD);
-
-                int ni;
-                int mi = 0;
-                for (int i = 0; i < observationSetList.size(); i++) {
-                    ObservationSet os = observationSetList.get(i);
-                    List<DescriptorGroup> ds = projectDescriptor.descriptorList.get(i);
-
-                    if (os.isActive() == true & os.isPredict() == true) {
-
-                        ni = 0;
-                        for (DescriptorGroup dg : ds) {
-
-                            for (Descriptor descriptor : dg.descriptorList) {
-                                predictDescriptorMatrix.data[mi][ni] = descriptor.getValue();
-                                ni++;
-                            }
-                        }
-                        mi++;
-                    }
-                }
-            }
-        });
-
-        t2.start();
-
-        try {
-            t2.join();
-        } catch (InterruptedException ex) {
-            logger.error(ex.getMessage());
+        boolean[] select = new boolean[observationSetList.size()];
+        for (int i = 0; i < select.length; i++) {
+            ObservationSet os = observationSetList.get(i);
+            select[i] = os.isActive() == true & os.isPredict() == true;
         }
+
+        this.predictDescriptorMatrix = projectDescriptor.getTable().toMatrix(select);
     }
 
     public List<ObservationSet> getObservationSetList() {
@@ -856,19 +691,27 @@ public final class Screen {
 
     public List<String> getDescriptorName() {
 
-        List<String> descriptorName = new ArrayList<>();
-        //
-        if (projectDescriptor.descriptorList == null || projectDescriptor.descriptorList.isEmpty()) {
+        if (projectDescriptor.getEntryCount() == 0) {
             return null;
         }
 
-        List<DescriptorGroup> descriptorGroupList = projectDescriptor.descriptorList.get(0);
-        descriptorGroupList.stream().forEach((dg) -> {
-            dg.descriptorList.stream().forEach((descriptor) -> {
-                descriptorName.add(descriptor.getName());
-            });
-        });
-        return descriptorName;
+        return new ArrayList<>(Arrays.asList(projectDescriptor.getTable().getName()));
+    }
+
+    public Integer getSettingProcessor() {
+        return settingProcessor;
+    }
+
+    public void setSettingProcessor(Integer settingProcessor) {
+        this.settingProcessor = settingProcessor;
+    }
+
+    public Integer getSettingParallelism() {
+        return settingParallelism;
+    }
+
+    public void setSettingParallelism(Integer settingParallelism) {
+        this.settingParallelism = settingParallelism;
     }
 
     public String getProjectPath() {
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.biojava.nbio.structure.Structure;
 
+import org.mantoQSAR.core.DescriptorContext;
 import org.mantoQSAR.core.DescriptorSet;
 import org.mantoQSAR.core.Molecule;
 import org.mantoQSAR.core.ObservationSet;
@@ -49,22 +50,35 @@ public class DescriptorGroup {
     String stIdent;
     List<Double[]> vector = null;
 
-    ArrayList<ArrayList<Descriptor>> descriptorDetail;
+    // descriptor values of each orientation
+    OrientationDetail detail;
     int descriptorNumb;
 
+    // inputs of the calculation, groups without context use the open project
+    DescriptorContext context = null;
+
     public DescriptorGroup(){
        this(0, 0, null); 
     }
     
     
     public DescriptorGroup(int observationID, int descriptorID, List<Double[]> vec){
+        this(null, observationID, descriptorID, vec);
+    }
+
+    public DescriptorGroup(DescriptorContext context, List<Double[]> vec){
+        this(context, context.getObservationID(), context.getDescriptorID(), vec);
+    }
+
+    private DescriptorGroup(DescriptorContext context, int observationID, int descriptorID, List<Double[]> vec){
         this.logger = LoggerFactory.getLogger(DescriptorGroup.class);
  
+        this.context = context;
         this.observationID = observationID;
         this.descriptorSetID = descriptorID; 
         
         this.descriptorList = new ArrayList<>();
-        this.descriptorDetail = new ArrayList<>();
+        this.detail = new OrientationDetail();
         this.stIdent = this.getDescriptorSet().getDescriptor().name;
 
         if (vec == null) {
@@ -79,6 +93,10 @@ public class DescriptorGroup {
        this(observationID, descriptorID, null);
     }
 
+    public DescriptorGroup(DescriptorContext context){
+       this(context, null);
+    }
+
     public boolean isCALC_STATE() {
         return CALC_STATE;
     }
@@ -87,33 +105,70 @@ public class DescriptorGroup {
         this.CALC_STATE = CALC_STATE;
     }
 
+    /*
+    * reads the detail of descriptor files written before the detail was
+    * stored as OrientationDetail
+    */
     public void setDescriptorDetail(ArrayList<ArrayList<Descriptor>> descriptorDetail) {
-        this.descriptorDetail = descriptorDetail;
+        this.detail = OrientationDetail.of(descriptorDetail);
+    }
+
+    public OrientationDetail getDetail() {
+        return detail;
+    }
+
+    public void setDetail(OrientationDetail detail) {
+        this.detail = detail;
     }
 
     
+    @JSON(include=false)
+    public DescriptorContext getContext(){
+        return context;
+    }
+
     @JSON(include=false)
     public DescriptorSet getDescriptorSet(){
+        if (context != null) {
+            return context.getDescriptorSet();
+        }
         return Screen.getInstance().getDescriptorSet(this.descriptorSetID);
     }
 
     
     @JSON(include=false)
     public Molecule getMolecule(){
+        if (context != null) {
+            return context.getMolecule();
+        }
          return Screen.getInstance().getMolecule(this.observationID);
     }
    
     @JSON(include=false)
     public ObservationSet getObservationSet(){
+        if (context != null) {
+            return context.getObservationSet();
+        }
         return Screen.getInstance().getObservationSet(this.observationID);
         
      }
     
+    /*
+    * ionic strength of the observation conditions, see DescriptorContext
+    */
+    @JSON(include=false)
+    public double getObservationIonicStrength(){
+        if (context != null) {
+            return context.getIonicStrength();
+        }
+        return DescriptorContext.getIonicStrength(this.getObservationSet());
+    }
+    
     public List<Descriptor> getDescriptor() {
 
         if (this.descriptorList.isEmpty()) {
 
-            this.descriptorDetail.clear();
+            this.detail = new OrientationDetail();
             this.descriptorList.clear();
             
             this.calcDescriptor();
@@ -149,7 +204,16 @@ public class DescriptorGroup {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /*
+    * descriptor lists of each orientation, new objects on every call
+    */
+    @JSON(include=false)
     public ArrayList<ArrayList<Descriptor>> getDescriptorDetail() {
+
+        ArrayList<ArrayList<Descriptor>> descriptorDetail = new ArrayList<>(detail.getOrientationCount());
+        for (int i = 0; i < detail.getOrientationCount(); i++) {
+            descriptorDetail.add(new ArrayList<>(detail.getDescriptorList(i)));
+        }
         return descriptorDetail;
     }
 
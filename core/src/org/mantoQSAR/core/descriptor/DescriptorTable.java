@@ -0,0 +1,266 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.descriptor;
+
+import flexjson.JSON;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.mantoQSAR.core.math.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* descriptor values of all observations as rows of primitive values under one
+* shared schema of descriptor names and groups. The schema is taken from the
+* first non empty entry; observations without descriptors have a row of
+* zeros, also if they were added before the schema was known. Values are
+* stored as returned by Descriptor.getValue.
+* The table is the stored form of the descriptor values, see
+* ProjectDescriptor; descriptor objects are only created for views.
+*/
+public class DescriptorTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptorTable.class);
+
+    // schema
+    private String[] name = new String[0];
+    private String[] group = new String[0];
+    private int[] groupStart = new int[]{0};
+
+    private final List<double[]> row = new ArrayList<>();
+
+    public synchronized void add(List<DescriptorGroup> entry) {
+        this.set(row.size(), entry);
+    }
+
+    /*
+    * row i from the descriptors of entry, rows in between are added empty
+    */
+    public synchronized void set(int i, List<DescriptorGroup> entry) {
+
+        if (name.length == 0 && DescriptorTable.count(entry) > 0) {
+            this.setSchema(entry);
+        }
+
+        double[] r = this.toRow(entry);
+        while (row.size() < i) {
+            row.add(new double[name.length]);
+        }
+        if (i < row.size()) {
+            row.set(i, r);
+        } else {
+            row.add(r);
+        }
+    }
+
+    private static int count(List<DescriptorGroup> entry) {
+
+        int n = 0;
+        if (entry != null) {
+            for (DescriptorGroup dg : entry) {
+                n = n + dg.getDescriptorList().size();
+            }
+        }
+        return n;
+    }
+
+    private void setSchema(List<DescriptorGroup> entry) {
+
+        int n = DescriptorTable.count(entry);
+        this.name = new String[n];
+        this.group = new String[entry.size()];
+        this.groupStart = new int[entry.size() + 1];
+
+        int j = 0;
+        for (int g = 0; g < entry.size(); g++) {
+            DescriptorGroup dg = entry.get(g);
+            group[g] = dg.getStIdent();
+            groupStart[g] = j;
+            for (Descriptor d : dg.getDescriptorList()) {
+                name[j] = d.getName();
+                j++;
+            }
+        }
+        groupStart[entry.size()] = j;
+
+        // rows added before the schema was known are empty, all rows have the column count
+        for (int i = 0; i < row.size(); i++) {
+            if (row.get(i).length != n) {
+                row.set(i, Arrays.copyOf(row.get(i), n));
+            }
+        }
+    }
+
+    /*
+    * values of entry in schema order
+    */
+    private double[] toRow(List<DescriptorGroup> entry) {
+
+        double[] r = new double[name.length];
+        if (entry == null || entry.isEmpty()) {
+            return r;
+        }
+
+        int j = 0;
+        for (DescriptorGroup dg : entry) {
+            for (Descriptor d : dg.getDescriptorList()) {
+                if (j < r.length) {
+                    r[j] = d.getValue();
+                }
+                j++;
+            }
+        }
+
+        if (j != r.length) {
+            logger.warn("Entry with " + j + " descriptors does not match the table schema of " + r.length + " descriptors.");
+        }
+        return r;
+    }
+
+    /*
+    * new descriptor objects of group g in row i, named by the schema
+    */
+    public synchronized List<Descriptor> getDescriptorList(int i, int g) {
+
+        double[] r = row.get(i);
+        List<Descriptor> dL = new ArrayList<>(groupStart[g + 1] - groupStart[g]);
+        for (int j = groupStart[g]; j < groupStart[g + 1]; j++) {
+            dL.add(new Descriptor(name[j], r[j]));
+        }
+        return dL;
+    }
+
+    @JSON(include=false)
+    public synchronized int getRowCount() {
+        return row.size();
+    }
+
+    @JSON(include=false)
+    public int getColumnCount() {
+        return name.length;
+    }
+
+    @JSON(include=false)
+    public int getGroupCount() {
+        return group.length;
+    }
+
+    public String getName(int column) {
+        return name[column];
+    }
+
+    public String[] getName() {
+        return name;
+    }
+
+    public void setName(String[] name) {
+        this.name = name;
+    }
+
+    public String[] getGroup() {
+        return group;
+    }
+
+    public void setGroup(String[] group) {
+        this.group = group;
+    }
+
+    public String getGroup(int g) {
+        return group[g];
+    }
+
+    /*
+    * first column of group g, getGroupStart(getGroupCount()) is the column count
+    */
+    public int getGroupStart(int g) {
+        return groupStart[g];
+    }
+
+    public int[] getGroupStart() {
+        return groupStart;
+    }
+
+    public void setGroupStart(int[] groupStart) {
+        this.groupStart = groupStart;
+    }
+
+    public int getGroupOf(int column) {
+
+        int g = Arrays.binarySearch(groupStart, column);
+        if (g < 0) {
+            return -g - 2;
+        }
+        // empty groups start at the same column, take the last of them
+        while (g + 1 < group.length && groupStart[g + 1] == column) {
+            g++;
+        }
+        return g;
+    }
+
+    public synchronized double get(int i, int column) {
+        return row.get(i)[column];
+    }
+
+    /*
+    * values of row i, shared with the table
+    */
+    public synchronized double[] getRow(int i) {
+        return row.get(i);
+    }
+
+    /*
+    * all rows, for JSON
+    */
+    public synchronized double[][] getValue() {
+        return row.toArray(new double[row.size()][]);
+    }
+
+    public synchronized void setValue(double[][] value) {
+        row.clear();
+        row.addAll(Arrays.asList(value));
+    }
+
+    /*
+    * all rows; the matrix shares the row arrays with the table and must not be
+    * changed
+    */
+    public synchronized Matrix toMatrix() {
+        return Matrix.wrap(row.toArray(new double[row.size()][]), name.length);
+    }
+
+    /*
+    * copy of the selected rows, for matrices that are changed by the caller
+    */
+    public synchronized Matrix toMatrix(boolean[] select) {
+
+        List<double[]> r = new ArrayList<>();
+        for (int i = 0; i < row.size() && i < select.length; i++) {
+            if (select[i]) {
+                r.add(row.get(i).clone());
+            }
+        }
+        return Matrix.wrap(r.toArray(new double[r.size()][]), name.length);
+    }
+}
@@ -0,0 +1,372 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.descriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.biojava.nbio.structure.Atom;
+import org.mantoQSAR.core.DescriptorContext;
+import org.mantoQSAR.core.DescriptorSet;
+import org.mantoQSAR.core.Molecule;
+import org.mantoQSAR.core.math.HarmonicExpansion;
+import org.mantoQSAR.core.math.PointSet;
+import org.mantoQSAR.core.math.Vector;
+import org.mantoQSAR.core.util.ColorStatic;
+import org.mantoQSAR.core.util.MoleculeTools;
+
+/*
+* patch and plane descriptors from a spherical harmonic expansion of the
+* surface values over the direction from the center of mass. The expansion is
+* calculated once per molecule, the summaries of an orientation are then
+* evaluated in O(degree^2) per channel, so dense orientation sets (1000 and
+* more) are affordable. Both summaries are zonal kernels in direction space:
+* - cap: values within a cone around the orientation, the cone angle is the
+*   projection size divided by the mean distance of the surface points from
+*   the center.
+* - plane: values within PLANE_DEPTH of a plane perpendicular to the
+*   orientation at the outer surface, as the contact area of
+*   PlaneDescriptorGroup. The surface is split into shells of SHELL_WIDTH by
+*   distance from the center. Within a shell of radius r the slab below a
+*   plane at height top is the cone cos(theta) >= (top - PLANE_DEPTH) / r, so
+*   each shell is summed with the Funk-Hecke factors of its own cone. The
+*   height top of the outer surface is taken from the surface points that
+*   are outermost along EXTREME_DIRECTION evenly spread directions.
+* An expansion of degree L resolves cones down to about pi / L (11 deg for the
+* default degree 16); narrower cones are smeared and their point count can
+* ring to 0 or below.
+*/
+public class HarmonicDescriptorGroup extends OrientationDescriptorGroup {
+
+    // depth in Angstrom of the plane contact area below the outermost surface
+    static final double PLANE_DEPTH = 10.0;
+
+    // width in Angstrom of the radius shells of the plane summary
+    static final double SHELL_WIDTH = 1.0;
+
+    // directions the outermost surface points are collected for, see getExtremePoint
+    static final int EXTREME_DIRECTION = 512;
+
+    public HarmonicDescriptorGroup(){
+        super();
+    }
+
+    public HarmonicDescriptorGroup(int observationID, int descriptorID) {
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public HarmonicDescriptorGroup(DescriptorContext context) {
+        super(context, HarmonicDescriptorGroup.getDirection(context.getDescriptorSet()));
+
+        int nD = 12;
+
+        this.descriptorList = new ArrayList<>();
+        for (int i = 0; i < nD; i++) {
+            this.descriptorList.add(new Descriptor("placeholder", 0.0));
+        }
+    }
+
+    /*
+    * evenly spread orientations, the orientation count of the set
+    */
+    private static List<Double[]> getDirection(DescriptorSet descriptorSet) {
+
+        int n = descriptorSet.getProjection().getOrientation();
+        return Vector.calcSphere(Math.max(1, n));
+    }
+
+    @Override
+    public void calcDescriptor() {
+
+        Molecule m = this.getMolecule();
+        DescriptorSet descriptorSet = this.getDescriptorSet();
+        PointSet surfacePoints = m.getSurfacePoints();
+
+        double[] surfaceValue = m.getPropertyMap(descriptorSet.getSurface());
+        if (surfaceValue == null) {
+            System.out.println(ColorStatic.RED + "Property to be mapped in descriptor calculation not identified." + ColorStatic.RESET);
+            return;
+        }
+
+        List<Atom> atomList = m.getAtomList();
+        Double[] cP = MoleculeTools.getCenter(atomList, MoleculeTools.getAtomMass(atomList));
+        double[] center = new double[]{cP[0], cP[1], cP[2]};
+
+        int degree = descriptorSet.getProjection().getDegree();
+        double[] radius = HarmonicDescriptorGroup.getRadius(surfacePoints, center);
+        double meanRadius = HarmonicDescriptorGroup.getMean(radius);
+        double angle = descriptorSet.getProjection().getSize() / meanRadius;
+
+        HarmonicExpansion cone = this.getExpansion(surfacePoints, surfaceValue, center)
+                .filter(HarmonicExpansion.getConeFilter(degree, angle));
+        HarmonicExpansion shell = this.getShellExpansion(surfacePoints, surfaceValue, center, radius);
+        double rMin = HarmonicDescriptorGroup.getShellStart(radius);
+        PointSet extreme = HarmonicDescriptorGroup.getExtremePoint(surfacePoints, center);
+
+        logger.info("harmonic expansion of degree " + degree + ", cone angle " + Math.toDegrees(angle) + " deg");
+        if (angle < Math.PI / degree) {
+            logger.warn("Cone angle " + Math.toDegrees(angle) + " deg is below the resolution of degree " + degree
+                    + " (" + Math.toDegrees(Math.PI / degree) + " deg), increase size or degree.");
+        }
+
+        int nSurface = surfacePoints.size();
+        this.calcOrientation((i) -> {
+            Double[] v = this.vector.get(i);
+            double top = HarmonicDescriptorGroup.getHeight(extreme, v);
+            double[] slab = HarmonicDescriptorGroup.calcSlab(shell.evaluateDegree(v[0], v[1], v[2]), rMin, degree, top);
+            return this.calcDescriptorValue(cone.evaluate(v[0], v[1], v[2]), slab, nSurface);
+        });
+
+        logger.info("Select orientation based on " + descriptorSet.getProjection().getSelectID()
+                + " selected for " + descriptorSet.getProjection().getSelectFunction());
+
+        int descrInd = this.getDescriptorPosition(descriptorSet.getProjection().getSelectID());
+        int prefInd = this.getOrientation(descrInd, descriptorSet.getProjection().getSelectFunction());
+        logger.info("Prefered orientation identified with " + prefInd);
+
+        this.descriptorList = this.detail.getDescriptorList(prefInd);
+
+        this.setCALC_STATE(true);
+    }
+
+    /*
+    * expansion of point count, value, positive and negative values, shared by
+    * sets with the same surface settings and degree
+    */
+    private HarmonicExpansion getExpansion(PointSet surfacePoints, double[] surfaceValue, double[] center) {
+
+        DescriptorSet descriptorSet = this.getDescriptorSet();
+        DescriptorSet.Surface surface = descriptorSet.getSurface();
+        int degree = descriptorSet.getProjection().getDegree();
+
+        String key = surface.getProperty() + "|" + surface.getMapFunctionName() + "|" + surface.getTolerance()
+                + "|" + surface.getBackend() + "|" + surface.getTheta() + "|" + surface.getGridSpacing() + "|" + degree;
+
+        return this.getMolecule().getHarmonicExpansion(key, (k) -> {
+
+            int n = surfaceValue.length;
+            double[] count = new double[n];
+            double[] positive = new double[n];
+            double[] negative = new double[n];
+
+            for (int i = 0; i < n; i++) {
+                count[i] = 1.0;
+                positive[i] = Math.max(surfaceValue[i], 0.0);
+                negative[i] = Math.min(surfaceValue[i], 0.0);
+            }
+
+            long t0 = System.currentTimeMillis();
+            HarmonicExpansion h = new HarmonicExpansion(degree, surfacePoints, center, count, surfaceValue, positive, negative);
+            logger.info("harmonic expansion of " + n + " surface points in " + (System.currentTimeMillis() - t0) + " ms");
+            return h;
+        });
+    }
+
+    /*
+    * expansion of point count, value, positive and negative values of each
+    * radius shell
+    */
+    private HarmonicExpansion getShellExpansion(PointSet surfacePoints, double[] surfaceValue, double[] center,
+                                                double[] radius) {
+
+        DescriptorSet descriptorSet = this.getDescriptorSet();
+        DescriptorSet.Surface surface = descriptorSet.getSurface();
+        int degree = descriptorSet.getProjection().getDegree();
+        double rMin = HarmonicDescriptorGroup.getShellStart(radius);
+        int nShell = HarmonicDescriptorGroup.getShellCount(radius);
+
+        String key = "shell|" + surface.getProperty() + "|" + surface.getMapFunctionName() + "|" + surface.getTolerance()
+                + "|" + surface.getBackend() + "|" + surface.getTheta() + "|" + surface.getGridSpacing() + "|" + degree
+                + "|" + rMin + "|" + nShell;
+
+        return this.getMolecule().getHarmonicExpansion(key, (k) -> {
+
+            int n = surfaceValue.length;
+            double[][] channel = new double[4 * nShell][n];
+
+            for (int i = 0; i < n; i++) {
+                int s = 4 * HarmonicDescriptorGroup.getShell(radius[i], rMin, nShell);
+                channel[s][i] = 1.0;
+                channel[s + 1][i] = surfaceValue[i];
+                channel[s + 2][i] = Math.max(surfaceValue[i], 0.0);
+                channel[s + 3][i] = Math.min(surfaceValue[i], 0.0);
+            }
+
+            long t0 = System.currentTimeMillis();
+            HarmonicExpansion h = new HarmonicExpansion(degree, surfacePoints, center, channel);
+            logger.info("harmonic expansion of " + nShell + " radius shells in " + (System.currentTimeMillis() - t0) + " ms");
+            return h;
+        });
+    }
+
+    /*
+    * point count, value, positive and negative values in the slab of depth
+    * PLANE_DEPTH below height top, from the degree sums of the shell expansion
+    */
+    private static double[] calcSlab(double[][] shell, double rMin, int degree, double top) {
+
+        int nShell = shell.length / 4;
+        double bottom = top - PLANE_DEPTH;
+
+        double[] slab = new double[4];
+        for (int s = 0; s < nShell; s++) {
+
+            double r = rMin + (s + 0.5) * SHELL_WIDTH;
+            if (bottom >= r) {
+                continue;
+            }
+
+            double[] factor = HarmonicExpansion.getConeFilter(degree, Math.acos(Math.max(-1.0, bottom / r)));
+            for (int c = 0; c < 4; c++) {
+                slab[c] += HarmonicDescriptorGroup.sum(factor, shell[4 * s + c]);
+            }
+        }
+        return slab;
+    }
+
+    /*
+    * surface points outermost along evenly spread directions, relative to
+    * center. The largest projection onto a direction over these points is the
+    * height of the surface in that direction, up to the spacing of the set.
+    */
+    private static PointSet getExtremePoint(PointSet point, double[] center) {
+
+        List<Double[]> direction = Vector.calcFibonacciSphere(EXTREME_DIRECTION);
+        boolean[] extreme = new boolean[point.size()];
+
+        for (Double[] u : direction) {
+            int best = -1;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < point.size(); i++) {
+                double p = (point.getX(i) - center[0]) * u[0] + (point.getY(i) - center[1]) * u[1]
+                        + (point.getZ(i) - center[2]) * u[2];
+                if (p > max) {
+                    max = p;
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                extreme[best] = true;
+            }
+        }
+
+        PointSet e = point.subset(extreme);
+        for (int i = 0; i < e.size(); i++) {
+            e.set(i, e.getX(i) - center[0], e.getY(i) - center[1], e.getZ(i) - center[2]);
+        }
+        return e;
+    }
+
+    private static double getHeight(PointSet extreme, Double[] v) {
+
+        double n = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+        double max = 0.0;
+        for (int i = 0; i < extreme.size(); i++) {
+            max = Math.max(max, (extreme.getX(i) * v[0] + extreme.getY(i) * v[1] + extreme.getZ(i) * v[2]) / n);
+        }
+        return max;
+    }
+
+    private static double sum(double[] factor, double[] degreeSum) {
+
+        double s = 0.0;
+        for (int l = 0; l < factor.length; l++) {
+            s += factor[l] * degreeSum[l];
+        }
+        return s;
+    }
+
+    private static double[] getRadius(PointSet point, double[] center) {
+
+        double[] r = new double[point.size()];
+        for (int i = 0; i < point.size(); i++) {
+            double dx = point.getX(i) - center[0];
+            double dy = point.getY(i) - center[1];
+            double dz = point.getZ(i) - center[2];
+            r[i] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        return r;
+    }
+
+    private static double getMean(double[] value) {
+
+        double sum = 0.0;
+        for (double v : value) {
+            sum += v;
+        }
+        return sum / Math.max(1, value.length);
+    }
+
+    private static double getShellStart(double[] radius) {
+
+        double min = Double.POSITIVE_INFINITY;
+        for (double r : radius) {
+            min = Math.min(min, r);
+        }
+        return (radius.length == 0) ? 0.0 : SHELL_WIDTH * Math.floor(min / SHELL_WIDTH);
+    }
+
+    private static int getShellCount(double[] radius) {
+
+        double max = 0.0;
+        for (double r : radius) {
+            max = Math.max(max, r);
+        }
+        return HarmonicDescriptorGroup.getShell(max, HarmonicDescriptorGroup.getShellStart(radius), Integer.MAX_VALUE) + 1;
+    }
+
+    private static int getShell(double r, double rMin, int nShell) {
+        return Math.min(nShell - 1, Math.max(0, (int) ((r - rMin) / SHELL_WIDTH)));
+    }
+
+    private List<Descriptor> calcDescriptorValue(double[] cone, double[] slab, int nSurface) {
+
+        DescriptorSet descriptorSet = this.getDescriptorSet();
+        List<Descriptor> descrList = new ArrayList<>();
+
+        String string = descriptorSet.getDescriptor().name;
+        string = string.substring(0, 1).toUpperCase() + string.substring(1);
+
+        if (!string.substring(0, 1).equalsIgnoreCase("_")) {
+            string = "_" + string;
+        }
+
+        descrList.add(new Descriptor("capNSurfP" + string, cone[0]));
+        descrList.add(new Descriptor("capRelSurf" + string, cone[0] / nSurface));
+        descrList.add(new Descriptor("capTotal" + string, cone[1]));
+        // the mean is undefined for caps with less than one point, where the ringing of the expansion dominates
+        descrList.add(new Descriptor("capMean" + string, (cone[0] >= 1.0) ? cone[1] / cone[0] : 0.0));
+        descrList.add(new Descriptor("capPos" + string, cone[2]));
+        descrList.add(new Descriptor("capNeg" + string, cone[3]));
+
+        descrList.add(new Descriptor("planeNSurfP" + string, slab[0]));
+        descrList.add(new Descriptor("planeRelSurf" + string, slab[0] / nSurface));
+        descrList.add(new Descriptor("planeTotal" + string, slab[1]));
+        descrList.add(new Descriptor("planeMean" + string, (slab[0] >= 1.0) ? slab[1] / slab[0] : 0.0));
+        descrList.add(new Descriptor("planePos" + string, slab[2]));
+        descrList.add(new Descriptor("planeNeg" + string, slab[3]));
+
+        return descrList;
+    }
+
+}
@@ -27,14 +27,33 @@ import flexjson.JSON;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Group;
+import org.mantoQSAR.core.DescriptorContext;
+import org.mantoQSAR.core.DescriptorSet;
+import org.mantoQSAR.core.Molecule;
+import org.mantoQSAR.core.math.PointSet;
 import org.mantoQSAR.core.math.Vector;
 import org.mantoQSAR.core.util.ColorStatic;
+import org.mantoQSAR.core.util.MoleculeTools;
+import org.mantoQSAR.core.util.PotentialGrid;
+import org.mantoQSAR.core.util.Projection;
 
 
 public abstract class OrientationDescriptorGroup extends DescriptorGroup{
 
+    /*
+    * pool shared by all orientation groups, orientations of one group are
+    * evaluated in parallel and written to their own result slot
+    */
+    private static final ForkJoinPool orientationPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     List<Atom> atomList;
     List<Group> asList;
     private Integer orientationIndex = null;
@@ -45,13 +64,27 @@ public abstract class OrientationDescriptorGroup extends DescriptorGroup{
     
     
     public OrientationDescriptorGroup(int observationID, int descriptorID) {
-        super(observationID, descriptorID);
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public OrientationDescriptorGroup(DescriptorContext context) {
+        super(context);
         
         this.atomList = new ArrayList<>();
         this.asList = new ArrayList<>();
         List<Double[]> sphereP = Vector.calcSphere(this.getDescriptorSet().getProjection().orientation);
         this.vector = sphereP; 
     }
+
+    /*
+    * group with the given orientations instead of the orientation sphere
+    */
+    OrientationDescriptorGroup(DescriptorContext context, List<Double[]> vector) {
+        super(context, vector);
+
+        this.atomList = new ArrayList<>();
+        this.asList = new ArrayList<>();
+    }
     
     @Override
     public List<Descriptor> getDescriptor(){
@@ -65,15 +98,135 @@ public abstract class OrientationDescriptorGroup extends DescriptorGroup{
         this.calcDescriptor();
     }
 
+    /*
+    * evaluates task for every orientation index and fills the detail in
+    * orientation order. Shared data (e.g. the molecule surface) has to be
+    * computed before, the task must not change state of this group.
+    */
+    void calcOrientation(IntFunction<List<Descriptor>> task){
+
+        int n = this.vector.size();
+        List<ArrayList<Descriptor>> slot = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            slot.add(null);
+        }
+
+        this.runParallel(() -> IntStream.range(0, n).parallel().forEach((i) -> {
+            slot.set(i, new ArrayList<>(task.apply(i)));
+        }));
+
+        this.detail = this.detail.append(slot);
+    }
+
+    private void runParallel(Runnable task){
+
+        // inside a pool (e.g. DescriptorScheduler) the orientations are stolen by its threads
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.run();
+            return;
+        }
+
+        try {
+            orientationPool.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Orientation calculation interrupted.", ex);
+        } catch (ExecutionException ex) {
+            logger.error("Orientation calculation failed. " + ex.getCause());
+            throw new IllegalStateException("Orientation calculation failed.", ex.getCause());
+        }
+    }
+
+    /*
+    * coarse to fine search for the direction with the max or min selector
+    * descriptor. The selector is evaluated on a Fibonacci sphere of coarse
+    * directions, then on each level around the best candidates (beam) at half
+    * the previous angular step. task returns the descriptors of a direction.
+    */
+    Double[] searchOrientation(Function<Double[], List<Descriptor>> task){
+
+        DescriptorSet.Projection setting = this.getDescriptorSet().getProjection();
+
+        double sign = 1.0;
+        if ("min".equals(setting.getSelectFunction())) {
+            sign = -1.0;
+        } else if (!"max".equals(setting.getSelectFunction())) {
+            System.out.println("Invalid orientation selector. Please use max or min.");
+        }
+
+        List<Double[]> coarse = Vector.calcFibonacciSphere(Math.max(2, setting.getCoarse()));
+
+        // position of the selector in the descriptor list
+        List<Descriptor> first = task.apply(coarse.get(0));
+        int pos = OrientationDescriptorGroup.getDescriptorPosition(first, setting.getSelectID());
+
+        List<Candidate> candidate = new ArrayList<>();
+        candidate.add(new Candidate(coarse.get(0), sign * first.get(pos).getValue()));
+        candidate.addAll(this.calcCandidate(coarse.subList(1, coarse.size()), task, pos, sign));
+        int nEval = coarse.size();
+
+        int beam = Math.max(1, setting.getBeam());
+        double step = Math.sqrt(4.0 * Math.PI / coarse.size());
+
+        for (int level = 0; level < setting.getRefine(); level++) {
+
+            candidate.sort(null);
+            candidate = new ArrayList<>(candidate.subList(0, Math.min(beam, candidate.size())));
+            step = step / 2.0;
+
+            List<Double[]> direction = new ArrayList<>();
+            for (Candidate c : candidate) {
+                direction.addAll(Vector.calcNeighbour(c.direction, step, 6));
+            }
+            candidate.addAll(this.calcCandidate(direction, task, pos, sign));
+            nEval = nEval + direction.size();
+        }
+        candidate.sort(null);
+
+        logger.info("Orientation search evaluated " + nEval + " directions, final step "
+                + Math.toDegrees(step) + " deg, selector " + sign * candidate.get(0).score);
+
+        return candidate.get(0).direction;
+    }
+
+    private List<Candidate> calcCandidate(List<Double[]> direction, Function<Double[], List<Descriptor>> task,
+                                          int pos, double sign){
+
+        Candidate[] slot = new Candidate[direction.size()];
+
+        this.runParallel(() -> IntStream.range(0, slot.length).parallel().forEach((i) -> {
+            slot[i] = new Candidate(direction.get(i), sign * task.apply(direction.get(i)).get(pos).getValue());
+        }));
+
+        List<Candidate> candidate = new ArrayList<>(slot.length);
+        Collections.addAll(candidate, slot);
+        return candidate;
+    }
+
+    /*
+    * direction with its signed selector value, best (largest) first
+    */
+    private static class Candidate implements Comparable<Candidate> {
+
+        final Double[] direction;
+        final double score;
+
+        Candidate(Double[] direction, Double value) {
+            this.direction = direction;
+            this.score = (value == null || value.isNaN()) ? Double.NEGATIVE_INFINITY : value;
+        }
+
+        @Override
+        public int compareTo(Candidate c) {
+            return Double.compare(c.score, this.score);
+        }
+    }
+
     public void displayDescriptorValue(int descrNumb){
-        List<Double> valueList = new ArrayList<>();
+        double[] value = this.detail.getColumn(descrNumb);
         
-        this.descriptorDetail.stream().forEach((dL) -> {
-            valueList.add(dL.get(descrNumb).getValue());
-        });
-        
-        for(int i = 0; i < valueList.size(); i++){
-            System.out.println(ColorStatic.PURPLE + i + " " + valueList.get(i) + ColorStatic.RESET);
+        for(int i = 0; i < value.length; i++){
+            System.out.println(ColorStatic.PURPLE + i + " " + value[i] + ColorStatic.RESET);
         }
         
     }
@@ -83,9 +236,9 @@ public abstract class OrientationDescriptorGroup extends DescriptorGroup{
         
         List<Double> valueList = new ArrayList<>();
         
-        this.descriptorDetail.stream().forEach((dL) -> {
-            valueList.add(dL.get(descrNumb).getValue());
-        });
+        for (double value : this.detail.getColumn(descrNumb)) {
+            valueList.add(value);
+        }
        
        double v = 0.0; 
         switch(selectMode){
@@ -108,8 +261,11 @@ public abstract class OrientationDescriptorGroup extends DescriptorGroup{
     @JSON(include=false)
     public int getDescriptorPosition(String selectID) {
 
-       List<Descriptor> dL = this.descriptorDetail.get(0);
-       
+       return OrientationDescriptorGroup.getDescriptorPosition(this.detail.getDescriptorList(0), selectID);
+    }
+
+    static int getDescriptorPosition(List<Descriptor> dL, String selectID) {
+
        List<Integer> pos = new ArrayList<>(); 
 
        if(selectID == null){
@@ -141,6 +297,135 @@ public abstract class OrientationDescriptorGroup extends DescriptorGroup{
     return pos.get(0);
     }
 
+    /*
+    * surface values valueMap projected onto plane points in the plane medium,
+    * sampled from the plane grid if the projection sets a grid spacing. source
+    * names the surface map, groups with equal source and settings share a grid.
+    */
+    double[] getPlaneValue(PointSet plane, double[] valueMap, String source){
+       
+        PotentialGrid grid = this.getPlaneGrid(valueMap, source); 
+        if(grid != null){
+            return grid.sample(plane); 
+        }
+        
+        return Molecule.getProjection(this.getDescriptorSet().getSurface()).calcProjection(plane, 
+                            this.getPlaneSource(valueMap), 
+                            this.getDescriptorSet().getProjection().getMapFunctionName(),
+                            0.0,            // minimum distance
+                            78.0,           // dielectric constant of medium
+                            this.getObservationIonicStrength());
+    }
+    
+    private PointSet getPlaneSource(double[] valueMap){
+        
+        PointSet surfacePoints = this.getMolecule().getSurfacePoints();
+        return new PointSet(surfacePoints.getX(), surfacePoints.getY(), surfacePoints.getZ(), valueMap);
+    }
+    
+    /*
+    * surface values projected onto a grid covering the shell the planes of
+    * the evaluated orientations lie in. Null if no grid spacing is set or if
+    * the shell has more nodes than the planes have points, as projecting the
+    * plane points directly is cheaper then.
+    */
+    PotentialGrid getPlaneGrid(double[] valueMap, String source){
+        
+        DescriptorSet descriptorSet = this.getDescriptorSet(); 
+        DescriptorSet.Projection setting = descriptorSet.getProjection(); 
+        double spacing = setting.getGridSpacing(); 
+        
+        if(!(spacing > 0.0)){
+            return null; 
+        }
+        
+        double ionicStrength = this.getObservationIonicStrength(); 
+        DescriptorSet.Surface surface = descriptorSet.getSurface(); 
+        
+        // the surface map is identified by its settings
+        String key = source + "|" + surface.getProperty() + "|" + surface.getMapFunctionName() + "|" + surface.getTolerance() 
+                + "|" + surface.getBackend() + "|" + surface.getTheta() + "|" + surface.getGridSpacing() 
+                + "|" + ionicStrength + "|" + setting.getMapFunctionName() + "|" + setting.getSize() 
+                + "|" + setting.getDensity() + "|" + setting.getDistance() + "|" + spacing; 
+        
+        List<Double[]> direction = this.getShellDirection(); 
+        int nEval = this.getEvaluationCount(); 
+        key = key + "|" + direction.size() + "|" + nEval; 
+        
+        Molecule m = this.getMolecule(); 
+        return m.getPotentialGrid(key, (k) -> {
+            
+            List<Atom> atomList = m.getAtomList(); 
+            Double[] cP = MoleculeTools.getCenter(atomList);
+            PointSet atom = MoleculeTools.getAtomPosition(atomList); 
+            
+            // plane centers lie at the outermost atom plus distance along each
+            // direction, plane points up to half a diagonal beside the center
+            int count = (int) Math.ceil(setting.getSize() / setting.getDensity()); 
+            double halfDiagonal = setting.getDensity() * count * Math.sqrt(0.5); 
+            
+            double rMin = Double.POSITIVE_INFINITY; 
+            double rMax = 0.0; 
+            for (Double[] v : direction) {
+                double n = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]); 
+                double maxProjection = Double.NEGATIVE_INFINITY; 
+                for (int i = 0; i < atom.size(); i++) {
+                    maxProjection = Math.max(maxProjection, ((atom.getX(i) - cP[0]) * v[0] 
+                            + (atom.getY(i) - cP[1]) * v[1] + (atom.getZ(i) - cP[2]) * v[2]) / n); 
+                }
+                double offset = Math.max(0.0, maxProjection + setting.getDistance()); 
+                rMin = Math.min(rMin, offset); 
+                rMax = Math.max(rMax, Math.sqrt(offset * offset + halfDiagonal * halfDiagonal)); 
+            }
+            
+            double nNode = PotentialGrid.getShellNodeCount(rMin, rMax, spacing); 
+            double nPoint = (double) nEval * count * count; 
+            if (!(nNode < nPoint)) {
+                logger.info("plane grid with about " + (long) nNode + " nodes not built, " + (long) nPoint 
+                        + " plane points are projected directly");
+                return null; 
+            }
+            
+            // planes of other directions may leave the shell, their points are evaluated directly
+            return PotentialGrid.shell(new double[]{cP[0], cP[1], cP[2]}, rMin, rMax, 
+                            this.getPlaneSource(valueMap), Molecule.getProjection(surface), 
+                            setting.getMapFunctionName(), 
+                            0.0,            // minimum distance
+                            78.0,           // dielectric constant of medium
+                            ionicStrength, 
+                            spacing); 
+        });
+    }
+    
+    /*
+    * directions the plane grid is fitted to: the orientations of the group,
+    * or the coarse directions of a hierarchical search
+    */
+    private List<Double[]> getShellDirection(){
+        
+        DescriptorSet.Projection setting = this.getDescriptorSet().getProjection(); 
+        if (setting.isHierarchicalSearch()) {
+            return Vector.calcFibonacciSphere(Math.max(2, setting.getCoarse())); 
+        }
+        if (this.vector == null || this.vector.isEmpty()) {
+            return Vector.calcSphere(setting.orientation); 
+        }
+        return this.vector; 
+    }
+    
+    /*
+    * number of planes evaluated by calcDescriptor
+    */
+    private int getEvaluationCount(){
+        
+        DescriptorSet.Projection setting = this.getDescriptorSet().getProjection(); 
+        if (setting.isHierarchicalSearch()) {
+            // coarse directions, six neighbours per candidate and level, the best one in full
+            return Math.max(2, setting.getCoarse()) + 6 * setting.getRefine() * Math.max(1, setting.getBeam()) + 1; 
+        }
+        return this.getShellDirection().size(); 
+    }
+
     public List<Atom> getAtomList() {
         return atomList;
     }
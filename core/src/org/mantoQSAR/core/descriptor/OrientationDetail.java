@@ -0,0 +1,160 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.descriptor;
+
+import flexjson.JSON;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+* descriptor values of all orientations of a group in one block, orientation i
+* and descriptor j at i * getDescriptorCount() + j. Values are stored as
+* returned by Descriptor.getValue, so undefined results are written as numbers
+* to JSON. The descriptor names are a schema shared by all groups with the
+* same names.
+*/
+public class OrientationDetail {
+
+    // name schemas in use, see getSchema
+    private static final Map<List<String>, String[]> schemaCache = new ConcurrentHashMap<>();
+
+    private String[] name;
+    private double[] value;
+
+    public OrientationDetail() {
+        this.name = new String[0];
+        this.value = new double[0];
+    }
+
+    private OrientationDetail(String[] name, double[] value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    /*
+    * block of the descriptor lists of each orientation, the names are taken
+    * from the first orientation
+    */
+    public static OrientationDetail of(List<? extends List<Descriptor>> detail) {
+
+        if (detail == null || detail.isEmpty()) {
+            return new OrientationDetail();
+        }
+
+        List<Descriptor> first = detail.get(0);
+        String[] n = new String[first.size()];
+        for (int j = 0; j < n.length; j++) {
+            n[j] = first.get(j).getName();
+        }
+        n = OrientationDetail.getSchema(n);
+
+        double[] v = new double[detail.size() * n.length];
+        for (int i = 0; i < detail.size(); i++) {
+            List<Descriptor> dL = detail.get(i);
+            for (int j = 0; j < n.length && j < dL.size(); j++) {
+                v[i * n.length + j] = dL.get(j).getValue();
+            }
+        }
+        return new OrientationDetail(n, v);
+    }
+
+    private static String[] getSchema(String[] name) {
+        return schemaCache.computeIfAbsent(Arrays.asList(name), (k) -> name);
+    }
+
+    /*
+    * this block followed by the orientations of detail
+    */
+    public OrientationDetail append(List<? extends List<Descriptor>> detail) {
+
+        if (this.getOrientationCount() == 0) {
+            return OrientationDetail.of(detail);
+        }
+
+        OrientationDetail add = OrientationDetail.of(detail);
+        double[] v = Arrays.copyOf(value, value.length + add.value.length);
+        System.arraycopy(add.value, 0, v, value.length, add.value.length);
+        return new OrientationDetail(name, v);
+    }
+
+    @JSON(include=false)
+    public int getOrientationCount() {
+        return (name.length == 0) ? 0 : value.length / name.length;
+    }
+
+    @JSON(include=false)
+    public int getDescriptorCount() {
+        return name.length;
+    }
+
+    /*
+    * value of descriptor j in orientation i
+    */
+    public double get(int i, int j) {
+        return value[i * name.length + j];
+    }
+
+    /*
+    * values of descriptor j over all orientations
+    */
+    public double[] getColumn(int j) {
+
+        double[] c = new double[this.getOrientationCount()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = this.get(i, j);
+        }
+        return c;
+    }
+
+    /*
+    * new descriptor objects of orientation i
+    */
+    public List<Descriptor> getDescriptorList(int i) {
+
+        List<Descriptor> dL = new ArrayList<>(name.length);
+        for (int j = 0; j < name.length; j++) {
+            dL.add(new Descriptor(name[j], value[i * name.length + j]));
+        }
+        return dL;
+    }
+
+    public String[] getName() {
+        return name;
+    }
+
+    public void setName(String[] name) {
+        this.name = OrientationDetail.getSchema(name);
+    }
+
+    public double[] getValue() {
+        return value;
+    }
+
+    public void setValue(double[] value) {
+        this.value = value;
+    }
+}
@@ -25,12 +25,13 @@ package org.mantoQSAR.core.descriptor;
 
 import flexjson.JSON;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import org.mantoQSAR.core.DescriptorContext;
 import org.mantoQSAR.core.DescriptorSet;
 import org.mantoQSAR.core.Molecule;
+import org.mantoQSAR.core.math.PointSet;
+import org.mantoQSAR.core.math.StatisticAccumulator;
 import org.mantoQSAR.core.util.ColorStatic;
-import org.mantoQSAR.core.util.Projection;
 
 
 public class PatchDescriptorGroup extends OrientationDescriptorGroup {
@@ -43,7 +44,11 @@ public class PatchDescriptorGroup extends OrientationDescriptorGroup {
     
     
     public PatchDescriptorGroup(int observationID, int descriptorID) {
-        super(observationID, descriptorID);
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public PatchDescriptorGroup(DescriptorContext context) {
+        super(context);
 
         this.valueMap = new ArrayList<>();
 
@@ -62,42 +67,43 @@ public class PatchDescriptorGroup extends OrientationDescriptorGroup {
 
         Molecule m = this.getMolecule();
         DescriptorSet descriptorSet = this.getDescriptorSet();        
-        List<Double[]> surfacePoints = m.getSurface();
-
-        this.valueMap = new ArrayList<>(surfacePoints.size());
+        PointSet surfacePoints = m.getSurfacePoints();
 
-        Projection p = new Projection();
-        
-        switch (descriptorSet.getSurface().getProperty()) {
-            case "esp":
-                valueMap = p.calcProjection(surfacePoints,
-                        m.getAtomPosition(),
-                        m.getOccupancy(),
-                        descriptorSet.getSurface().getMapFunction(),
-                        0.0);
-                break;
-
-            case "hyd":
-                valueMap = p.calcProjection(surfacePoints,
-                        m.getResiduePosition("mass"),
-                        m.getHydrophobicityConstant(),
-                        descriptorSet.getSurface().getMapFunction(),
-                        0.0);
-
-                break;
-
-            default:
-               
-                System.out.println(ColorStatic.RED + "Property to be mapped in descriptor calculation not identified." + ColorStatic.RESET);
-                return;
+        double[] surfaceValue = m.getPropertyMap(descriptorSet.getSurface());
+        if (surfaceValue == null) {
+            System.out.println(ColorStatic.RED + "Property to be mapped in descriptor calculation not identified." + ColorStatic.RESET);
+            return;
         }
         
-        p = null; 
+        this.valueMap = PointSet.toList(surfaceValue);
 
-        for (Double[] vector1 : this.vector) {
+        if (descriptorSet.getProjection().isHierarchicalSearch()) {
+            // only the best direction of the search is evaluated in full
+            Double[] best = this.searchOrientation((v) -> this.calcDescriptorValue(v, surfaceValue));
+            this.vector = new ArrayList<>();
+            this.vector.add(best);
+        }
 
-            boolean[] patchPointIO = m.getSurfacePatchIO(vector1, descriptorSet.getProjection().getSize());
+        this.calcOrientation((i) -> this.calcDescriptorValue(this.vector.get(i), surfaceValue));
 
+        logger.info("Select orientation based on " + descriptorSet.getProjection().getSelectID()
+                + " selected for " + descriptorSet.getProjection().getSelectFunction());
+
+        int descrInd = this.getDescriptorPosition(descriptorSet.getProjection().getSelectID());
+        logger.info("Descriptor position in set is " + descrInd);
+
+        int prefInd = this.getOrientation(descrInd, descriptorSet.getProjection().getSelectFunction());
+        logger.info("Prefered orientation identified with " + descrInd);
+
+        this.descriptorList = this.detail.getDescriptorList(prefInd);
+
+        this.setCALC_STATE(true);
+        
+    }
+    
+    private static double[] selectValue(double[] value, boolean[] patchPointIO){
+        
+            // get number of positives (points in patch)
             int patchCount = 0; 
             for(int i = 0; i < patchPointIO.length; i++){
                 if(patchPointIO[i] == true){
@@ -105,33 +111,26 @@ public class PatchDescriptorGroup extends OrientationDescriptorGroup {
                 }
             }
 
-            List<Double> valueMap2 = new ArrayList<>(patchCount); 
+            double[] valueMap2 = new double[patchCount]; 
+            int j = 0; 
             for(int i = 0; i < patchPointIO.length; i++){
                 if(patchPointIO[i] == true){
-                    valueMap2.add(valueMap.get(i));
+                    valueMap2[j] = value[i];
+                    j++; 
                 }   
             }
- 
-            this.descriptorDetail.add((ArrayList<Descriptor>) this.calcDescriptorValue(valueMap2));
-
-        }
-
-        logger.info("Select orientation based on " + descriptorSet.getProjection().getSelectID()
-                + " selected for " + descriptorSet.getProjection().getSelectFunction());
-
-        int descrInd = this.getDescriptorPosition(descriptorSet.getProjection().getSelectID());
-        logger.info("Descriptor position in set is " + descrInd);
+            return valueMap2; 
+    }
 
-        int prefInd = this.getOrientation(descrInd, descriptorSet.getProjection().getSelectFunction());
-        logger.info("Prefered orientation identified with " + descrInd);
+    private List<Descriptor> calcDescriptorValue(Double[] vector1, double[] surfaceValue) {
 
-        this.descriptorList = this.descriptorDetail.get(prefInd);
+        boolean[] patchPointIO = this.getMolecule().getSurfacePatchIO(vector1, this.getDescriptorSet().getProjection().getSize());
+        double[] valueMap2 = PatchDescriptorGroup.selectValue(surfaceValue, patchPointIO);
 
-        this.setCALC_STATE(true);
-        
+        return this.calcDescriptorValue(valueMap2);
     }
 
-    private List<Descriptor> calcDescriptorValue(List<Double> valueMap) {
+    private List<Descriptor> calcDescriptorValue(double[] valueMap) {
 
         DescriptorSet descriptorSet = this.getDescriptorSet();
         List<Descriptor> descrList = new ArrayList<>();
@@ -143,36 +142,28 @@ public class PatchDescriptorGroup extends OrientationDescriptorGroup {
             string = "_" + string;
         }
 
-        double size = (double) valueMap.size();
+        double size = (double) valueMap.length;
         double res = Math.pow(descriptorSet.getSurface().getResolution(), 2);
 
         double c = size / res;
         descrList.add(new Descriptor("totalSurf" + string, c));
         descrList.add(new Descriptor("nSurfP" + string, size));
 
-        double sum = 0.0;
-        for (Double dd : valueMap) {
-            sum = sum + dd;
-        }
+        double binScale = descriptorSet.getDescriptor().binScale;
+        int nBin = 10;
+        StatisticAccumulator stat = StatisticAccumulator.of(valueMap, nBin, binScale);
+
+        double sum = stat.getSum();
 
         double mean = sum / size;
 
         descrList.add(new Descriptor(("sumSurf" + string), sum));
         descrList.add(new Descriptor(("mean" + string), mean));
 
-        List<Double> sortValueMap = new ArrayList<>();
-        for (Double dd : valueMap) {
-            sortValueMap.add(dd);
-        }
+        double median = stat.getMedian();
 
-        Collections.sort(sortValueMap);
-
-        int center = sortValueMap.size() / 2;
-
-        double median = sortValueMap.get(center);
-
-        double max = Collections.max(valueMap);
-        double min = Collections.min(valueMap);
+        double max = stat.getMax();
+        double min = stat.getMin();
 
         descrList.add(new Descriptor(("medianSurf" + string), median));
         descrList.add(new Descriptor(("meanRes" + string), (mean) / res));
@@ -181,55 +172,27 @@ public class PatchDescriptorGroup extends OrientationDescriptorGroup {
         descrList.add(new Descriptor(("min" + string), min));
 
         descrList.add(new Descriptor(("devA" + string), (max - min) / median));
-        descrList.add(new Descriptor(("devB" + string), Collections.max(valueMap)));
+        descrList.add(new Descriptor(("devB" + string), max));
 
-        List<Double> posValueMap = new ArrayList<>();
-        List<Double> negValueMap = new ArrayList<>();
-        double sumPosVal = 0.0;
-        double sumNegVal = 0.0;
+        int nPosVal = stat.getPositiveCount();
+        int nNegVal = stat.getNegativeCount();
+        double sumPosVal = stat.getPositiveSum();
+        double sumNegVal = stat.getNegativeSum();
 
-        for (Double dd : valueMap) {
-            if (dd > 0.0) {
-                posValueMap.add(dd);
-                sumPosVal = sumPosVal + dd;
-            }
-            if (dd < 0.0) {
-                negValueMap.add(dd);
-                sumNegVal = sumNegVal + dd;
-            }
-        }
+        descrList.add(new Descriptor(("nPos" + string), (double) nPosVal));
+        descrList.add(new Descriptor(("nNeg" + string), (double) nPosVal));
 
-        descrList.add(new Descriptor(("nPos" + string), (double) posValueMap.size()));
-        descrList.add(new Descriptor(("nNeg" + string), (double) posValueMap.size()));
-
-        descrList.add(new Descriptor(("relPos" + string), (double) posValueMap.size() / valueMap.size()));
-        descrList.add(new Descriptor(("relNeg" + string), (double) posValueMap.size() / valueMap.size()));
+        descrList.add(new Descriptor(("relPos" + string), (double) nPosVal / valueMap.length));
+        descrList.add(new Descriptor(("relNeg" + string), (double) nPosVal / valueMap.length));
 
         descrList.add(new Descriptor(("sumPos" + string), sumPosVal));
         descrList.add(new Descriptor(("sumNeg" + string), sumNegVal));
 
-        descrList.add(new Descriptor(("averPos" + string), sumPosVal / posValueMap.size()));
-        descrList.add(new Descriptor(("averNeg" + string), sumNegVal / negValueMap.size()));
-
-        double binScale = descriptorSet.getDescriptor().binScale;
-        int nBin = 10;
-        List<Double> binVal = new ArrayList<>();
-
-        for (int i = 1; i <= nBin; i++) {
-            double binLow = (-(binScale * nBin) * 0.5) + (i) * binScale;
-            double binHigh = (-(binScale * nBin) * 0.5) + (i + 1) * binScale;
-
-            double a = 0.0;
-            for (Double valueMap1 : valueMap) {
-                if (valueMap1 >= binLow && valueMap1 < binHigh) {
-                    a = a + 1;
-                }
-            }
-            binVal.add(a);
-        }
+        descrList.add(new Descriptor(("averPos" + string), sumPosVal / nPosVal));
+        descrList.add(new Descriptor(("averNeg" + string), sumNegVal / nNegVal));
 
         for (int i = 0; i < nBin; i++) {
-            descrList.add(new Descriptor(("binAbs" + string + "_" + i), (double) binVal.get(i) / res));
+            descrList.add(new Descriptor(("binAbs" + string + "_" + i), (double) stat.getBin(i) / res));
         }
 
         return descrList;
@@ -254,23 +217,8 @@ public class PatchDescriptorGroup extends OrientationDescriptorGroup {
         
         Molecule m = this.getMolecule();
         boolean[] patchPointIO = m.getSurfacePatchIO(this.vector.get(index), this.getDescriptorSet().getProjection().getSize());
-
-            // get number of positives (points in patch)
-            int patchCount = 0; 
-            for(int i = 0; i < patchPointIO.length; i++){
-                if(patchPointIO[i] == true){
-                    patchCount ++; 
-                }
-            }
-
-            List<Double> valueMap2 = new ArrayList<>(patchCount); 
-            for(int i = 0; i < patchPointIO.length; i++){
-                if(patchPointIO[i] == true){
-                    valueMap2.add(this.valueMap.get(i));
-                }   
-            }
         
-        return valueMap2; 
+        return PointSet.toList(PatchDescriptorGroup.selectValue(PointSet.toArray(this.valueMap), patchPointIO)); 
         
     }
 
@@ -26,11 +26,13 @@ package org.mantoQSAR.core.descriptor;
 
 import flexjson.JSON;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import org.mantoQSAR.core.DescriptorContext;
 import org.mantoQSAR.core.DescriptorSet;
 import org.mantoQSAR.core.Molecule;
 import org.mantoQSAR.core.math.Plane;
+import org.mantoQSAR.core.math.PointSet;
+import org.mantoQSAR.core.math.StatisticAccumulator;
 import org.mantoQSAR.core.util.MoleculeTools;
 import org.mantoQSAR.core.util.Projection;
 
@@ -54,55 +56,26 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
     
     
     public PlaneDescriptorGroup(int observationID, int descriptorID) {
-        super(observationID, descriptorID);
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public PlaneDescriptorGroup(DescriptorContext context) {
+        super(context);
     }
     
     @JSON(include=false)
-    private List<Double>getValueMap(){
+    private double[] getValueMap(){
         
-        List<Double> valueMap = new ArrayList<>();
         DescriptorSet descriptorSet = this.getDescriptorSet();            
-        Molecule m = this.getMolecule();
-        List<Double[]> surfacePoints = m.getSurface();
         
-        Projection p = new Projection();
-        
-        switch (descriptorSet.getSurface().getProperty()){
-            case "esp":
-                
-
-                List<Double>  occ = m.getOccupancy(); 
-
-                
-                // assumes atom charges to be coded as occupancy value in PQR file 
-                // according to PQR definition
-                valueMap = p.calcProjection(surfacePoints, 
-                        m.getAtomPosition(), 
-                        m.getOccupancy(), 
-                        descriptorSet.getSurface().getMapFunction(), 
-                        0.0,            // minimum distance
+        double[] valueMap = this.getMolecule().getPropertyMap(descriptorSet.getSurface(), 
                         78.0,           // dielectric constant of medium
-                        this.getObservationSet().getCondition().getIonicStrength());
-                break;
-                
-            case "hyd":
-                valueMap = p.calcProjection(surfacePoints, 
-                        m.getResiduePosition("mass"), 
-                        m.getHydrophobicityConstant(), 
-                        descriptorSet.getSurface().getMapFunction(), 0.0,            // minimum distance
-                            78.0,           // dielectric constant of medium
-                            this.getObservationSet().getCondition().getIonicStrength());
-                break; 
-                
-            default: 
-                logger.error("Property to be mapped in descriptor calculation not identified.");
-                
-                return valueMap;
-        }
-        
-        p = null; 
+                        this.getObservationIonicStrength());
         
-        return valueMap; 
+        if(valueMap == null){
+            return new double[0]; 
+        }
+        return valueMap;
     }
     
     
@@ -111,19 +84,23 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
 
         Molecule m = this.getMolecule();
         DescriptorSet descriptorSet = this.getDescriptorSet();            
-        List<Double[]> surfacePoints = m.getSurface();
+        PointSet surfacePoints = m.getSurfacePoints();
         
         logger.info("surface points identified " + surfacePoints.size());
 
-                for(Double[] vector1:this.vector){
-                    
-                    List<Double[]> planeP = getPlane(vector1);
-                    List<Double> valueMap2 = getPlaneValue(planeP, this.getValueMap());
-                    Projection p = new Projection();
-                    
-                    Double[] surface2Plane = p.getAbsDistance(surfacePoints, planeP);
-                    this.descriptorDetail.add((ArrayList<Descriptor>) this.calcDescriptorValue(valueMap2, surface2Plane));
-                }
+        double[] valueMap = this.getValueMap();
+        
+        // grid is shared by all orientations, built before they start
+        this.getPlaneGrid(valueMap, "plane"); 
+        
+        if (descriptorSet.getProjection().isHierarchicalSearch()) {
+            // only the best direction of the search is evaluated in full
+            Double[] best = this.searchOrientation((v) -> this.calcDescriptorValue(v, valueMap)); 
+            this.vector = new ArrayList<>(); 
+            this.vector.add(best); 
+        }
+
+                this.calcOrientation((i) -> this.calcDescriptorValue(this.vector.get(i), valueMap));
                
                 logger.info("Select orientation based on " + descriptorSet.getProjection().getSelectID() + 
                  " selected for " + descriptorSet.getProjection().getSelectFunction());
@@ -134,10 +111,20 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
                 int prefInd = this.getOrientation(descrInd, descriptorSet.getProjection().getSelectFunction());
                 logger.info("Prefered orientation identified with " + prefInd);
                 
-                this.descriptorList = this.descriptorDetail.get(prefInd); 
+                this.descriptorList = this.detail.getDescriptorList(prefInd); 
+    }
+
+    private List<Descriptor> calcDescriptorValue(Double[] vector1, double[] valueMap) {
+        
+        PointSet planeP = getPlanePoints(vector1);
+        double[] valueMap2 = getPlaneValue(planeP, valueMap);
+        Projection p = new Projection();
+
+        double[] surface2Plane = p.getAbsDistance(this.getMolecule().getSurfaceCellList(), planeP);
+        return this.calcDescriptorValue(valueMap2, surface2Plane);
     }
 
-    private List<Descriptor> calcDescriptorValue(List<Double> valueMap, Double[] plane2surface) {
+    private List<Descriptor> calcDescriptorValue(double[] valueMap, double[] plane2surface) {
 
     List<Descriptor> descrList = new ArrayList<>();
     DescriptorSet descriptorSet = this.getDescriptorSet();
@@ -149,32 +136,33 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
         string = "_" + string;
     }
 
-    List<Double> a_sasa = new ArrayList<>(); 
-    int ii =0; 
-        for(Double d:plane2surface){
+    double[] a_sasa = new double[plane2surface.length]; 
+    int nA = 0; 
+        for(int ii = 0; ii < plane2surface.length; ii++){
 
-            if (d < (10 + descriptorSet.getProjection().getDistance())) {
-                a_sasa.add(valueMap.get(ii));
+            if (plane2surface[ii] < (10 + descriptorSet.getProjection().getDistance())) {
+                a_sasa[nA] = valueMap[ii];
+                nA++; 
             }
-            ii++;
         }
         double res = Math.pow(descriptorSet.getSurface().getResolution(), 2); 
     
-        double sizeA = ((double) a_sasa.size())*(res*res);
-        double size = (double) valueMap.size()*(res*res);
+        double sizeA = ((double) nA)*(res*res);
+        double size = (double) valueMap.length*(res*res);
 
         descrList.add(new Descriptor("relSurfA" + string, sizeA/size));
         descrList.add(new Descriptor("totalSurfA" + string, sizeA));
-        descrList.add(new Descriptor("nSurfP" + string, (double) a_sasa.size()));
+        descrList.add(new Descriptor("nSurfP" + string, (double) nA));
         
-        double sum = 0.0;
-        for(Double dd:valueMap){
-            sum = sum +dd; 
-        }
+        double binScale = descriptorSet.getDescriptor().binScale;
+        int nBin = 10; 
+        StatisticAccumulator stat = StatisticAccumulator.of(valueMap, nBin, binScale);
+        
+        double sum = stat.getSum();
         
         double sumA = 0.0; 
-        for(Double dd:a_sasa){
-            sumA = sumA+dd; 
+        for(int ii = 0; ii < nA; ii++){
+            sumA = sumA+a_sasa[ii]; 
         }
         
         double mean = sum/size;
@@ -188,28 +176,11 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
         
         System.out.println( sizeA + "  " + meanA + ";...");
         
+        double median = stat.getMedian();
+        double medianA = stat.getOrderStatistic(nA/2);
         
-        List<Double> sortValueMap = new ArrayList<>(); 
-        valueMap.stream().forEach((dd) -> {
-            sortValueMap.add(dd);
-        });
-       
-         List<Double> sortSurfA = new ArrayList<>(); 
-         a_sasa.stream().forEach((dd) -> {
-             sortSurfA.add(dd);
-        });
-        
-        Collections.sort(sortValueMap); 
-        Collections.sort(sortSurfA); 
-        
-        int center = sortValueMap.size()/2; 
-        int centerA = sortSurfA.size()/2;
-        
-        double median = sortValueMap.get(center);
-        double medianA = sortValueMap.get(centerA);
-        
-        double max = Collections.max(valueMap);
-        double min = Collections.min(valueMap);
+        double max = stat.getMax();
+        double min = stat.getMin();
         
         descrList.add(new Descriptor(("median" + string), median));
         descrList.add(new Descriptor(("medianSurfA" + string), medianA));
@@ -218,55 +189,27 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
         descrList.add(new Descriptor(("min" + string),min));
         
         descrList.add(new Descriptor(("devA" + string),(max - min)/median));
-        descrList.add(new Descriptor(("devB" + string),Collections.max(valueMap)));
-        
-        List<Double> posValueMap = new ArrayList<>(); 
-        List<Double> negValueMap = new ArrayList<>();
-        double sumPosVal = 0.0;
-        double sumNegVal = 0.0;
+        descrList.add(new Descriptor(("devB" + string),max));
         
-        for (Double dd:valueMap){
-            if(dd > 0.0){
-            posValueMap.add(dd);
-            sumPosVal = sumPosVal + dd;}
-            if(dd < 0.0){
-            negValueMap.add(dd);
-            sumNegVal=sumNegVal + dd;
-            }
-        }
+        int nPosVal = stat.getPositiveCount(); 
+        int nNegVal = stat.getNegativeCount();
+        double sumPosVal = stat.getPositiveSum();
+        double sumNegVal = stat.getNegativeSum();
         
-        descrList.add(new Descriptor(("nPos" + string), (double) posValueMap.size()));
-        descrList.add(new Descriptor(("nNeg" + string), (double) posValueMap.size()));
+        descrList.add(new Descriptor(("nPos" + string), (double) nPosVal));
+        descrList.add(new Descriptor(("nNeg" + string), (double) nPosVal));
         
-        descrList.add(new Descriptor(("relPos" + string), (double) posValueMap.size()/ valueMap.size()));
-        descrList.add(new Descriptor(("relNeg" + string), (double) posValueMap.size()/ valueMap.size()));
+        descrList.add(new Descriptor(("relPos" + string), (double) nPosVal/ valueMap.length));
+        descrList.add(new Descriptor(("relNeg" + string), (double) nPosVal/ valueMap.length));
         
         descrList.add(new Descriptor(("sumPos" + string), sumPosVal));
         descrList.add(new Descriptor(("sumNeg" + string), sumNegVal));
         
-        descrList.add(new Descriptor(("averPos" + string), sumPosVal/ posValueMap.size()));
-        descrList.add(new Descriptor(("averNeg" + string), sumNegVal/ negValueMap.size()));
- 
-        double binScale = descriptorSet.getDescriptor().binScale;
-        int nBin = 10; 
-        List<Double> binVal = new ArrayList<>();
-   
-   
-        for(int i =1; i <= nBin; i++){
-            double binLow= (-(binScale*nBin)*0.5) + (i)* binScale;
-            double binHigh = (-(binScale*nBin)*0.5) + (i+1)* binScale;
-  
-            double a = 0.0;
-        for (Double valueMap1 : valueMap) {
-            if (valueMap1 >= binLow && valueMap1 < binHigh) {
-                a = a+1;   
-            }
-        }
-        binVal.add(a);
-        }
+        descrList.add(new Descriptor(("averPos" + string), sumPosVal/ nPosVal));
+        descrList.add(new Descriptor(("averNeg" + string), sumNegVal/ nNegVal));
         
         for(int i = 0; i < nBin; i++){ 
-            descrList.add(new Descriptor(("binAbs" + string + "_" + i), (double) binVal.get(i)));
+            descrList.add(new Descriptor(("binAbs" + string + "_" + i), (double) stat.getBin(i)));
         }
  
         return descrList; 
@@ -278,16 +221,16 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
     @JSON(include=false)
     public List<Double[]> getPlane(int i){
 
-        return getPlane(this.vector.get(i));
+        return getPlanePoints(this.vector.get(i)).toList();
     }
     
     @JSON(include=false)
-    public List<Double[]> getPlane(Double[] vector1){
+    public PointSet getPlanePoints(Double[] vector1){
 
         Molecule m = this.getMolecule(); 
         DescriptorSet descriptorSet = this.getDescriptorSet(); 
         
-        Plane plane = new Plane(m.getAtomList(), vector1,
+        Plane plane = m.getPlane(vector1,
                            descriptorSet.getProjection().getSize(), 
                            descriptorSet.getProjection().getDensity(), 
                            descriptorSet.getProjection().getDistance());
@@ -297,24 +240,12 @@ public final class PlaneDescriptorGroup extends OrientationDescriptorGroup {
     @JSON(include=false)
     public List<Double> getPlaneValue(int i){
         
-        return getPlaneValue(getPlane(i), this.getValueMap()); 
+        return PointSet.toList(getPlaneValue(getPlanePoints(this.vector.get(i)), this.getValueMap())); 
     }
     
     @JSON(include=false)
-    public List<Double> getPlaneValue(List<Double[]> plane, List<Double> valueMap){
-       
-         Molecule m = this.getMolecule();
-         List<Double[]> surfacePoints = m.getSurface();
-        
-        Projection p = new Projection();
-        
-        return p.calcProjection(plane, 
-                            surfacePoints, 
-                            valueMap,
-                            this.getDescriptorSet().getProjection().getMapFunction(),
-                            0.0,            // minimum distance
-                            78.0,           // dielectric constant of medium
-                            this.getObservationSet().getCondition().getIonicStrength());
+    public double[] getPlaneValue(PointSet plane, double[] valueMap){
+        return this.getPlaneValue(plane, valueMap, "plane"); 
     }
     
     @JSON(include=false)
@@ -23,24 +23,166 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 
 package org.mantoQSAR.core.descriptor;
 
+import flexjson.JSON;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 
 public class ProjectDescriptor {
 
-public List<List<DescriptorGroup>> descriptorList;     
+// descriptor values of all observations, the stored form of the descriptors
+private DescriptorTable table; 
+
+// descriptor groups of each observation without their values, they keep the
+// orientations and the per orientation detail. Values are added from the
+// table when an entry is viewed, see getEntry
+private List<List<DescriptorGroup>> group; 
+
+// observation and settings each entry was calculated for, see DescriptorJournal
+private List<String> entryKey; 
     
 public ProjectDescriptor(){
     
-    this.descriptorList = new ArrayList<>(); 
+    this.table = new DescriptorTable(); 
+    this.group = new ArrayList<>(); 
+    this.entryKey = new ArrayList<>(); 
 }
 
+    /*
+    * descriptor groups of each observation, entries are built by getEntry on access
+    */
+    @JSON(include=false)
     public List<List<DescriptorGroup>> getDescriptorList() {
-        return descriptorList;
+        
+        return new AbstractList<List<DescriptorGroup>>() {
+            
+            @Override
+            public List<DescriptorGroup> get(int i) {
+                return ProjectDescriptor.this.getEntry(i);
+            }
+
+            @Override
+            public int size() {
+                return ProjectDescriptor.this.getEntryCount();
+            }
+        };
+    }
+
+    /*
+    * replaces all entries, also reads descriptor files written before the
+    * table was stored
+    */
+    public synchronized void setDescriptorList(List<List<DescriptorGroup>> descriptorList) {
+        
+        this.table = new DescriptorTable(); 
+        this.group = new ArrayList<>(); 
+        
+        if (descriptorList != null) {
+            for (int i = 0; i < descriptorList.size(); i++) {
+                this.setEntry(i, descriptorList.get(i));
+            }
+        }
+    }
+    
+    @JSON(include=false)
+    public synchronized int getEntryCount() {
+        return group.size();
+    }
+    
+    /*
+    * descriptor groups of observation i with their values taken from the table
+    */
+    public synchronized List<DescriptorGroup> getEntry(int i) {
+        
+        List<DescriptorGroup> entry = group.get(i);
+        
+        for (int g = 0; g < entry.size(); g++) {
+            DescriptorGroup dg = entry.get(g);
+            if (dg.getDescriptorList().isEmpty() && i < table.getRowCount() && g < table.getGroupCount()) {
+                dg.setDescriptorList(table.getDescriptorList(i, g));
+            }
+        }
+        return entry;
+    }
+    
+    /*
+    * sets the descriptor groups of observation i, adding entries as needed.
+    * The values are moved to the table, the groups are kept without them.
+    */
+    public synchronized void setEntry(int i, List<DescriptorGroup> entry) {
+        
+        table.set(i, entry);
+        
+        List<DescriptorGroup> stored = new ArrayList<>();
+        if (entry != null) {
+            for (DescriptorGroup dg : entry) {
+                dg.setDescriptorList(new ArrayList<>());
+                stored.add(dg);
+            }
+        }
+        
+        while (group.size() < i) {
+            group.add(new ArrayList<>());
+        }
+        if (i < group.size()) {
+            group.set(i, stored);
+        } else {
+            group.add(stored);
+        }
+    }
+    
+    /*
+    * sets entry i and the key of the observation and settings it was calculated for
+    */
+    public synchronized void setEntry(int i, List<DescriptorGroup> entry, String key) {
+        
+        this.setEntry(i, entry);
+        
+        if (entryKey == null) {
+            entryKey = new ArrayList<>();
+        }
+        while (entryKey.size() <= i) {
+            entryKey.add(null);
+        }
+        entryKey.set(i, key);
+    }
+    
+    /*
+    * key of entry i, null if unknown (e.g. files written without keys)
+    */
+    public synchronized String getEntryKey(int i) {
+        
+        if (entryKey == null || i >= entryKey.size()) {
+            return null;
+        }
+        return entryKey.get(i);
+    }
+
+    public List<String> getEntryKey() {
+        return entryKey;
+    }
+
+    public synchronized void setEntryKey(List<String> entryKey) {
+        this.entryKey = entryKey;
+    }
+    
+    public synchronized DescriptorTable getTable() {
+        return table; 
+    }
+
+    public synchronized void setTable(DescriptorTable table) {
+        this.table = table; 
+    }
+    
+    /*
+    * stored groups without values, for JSON; use getEntry
+    */
+    public synchronized List<List<DescriptorGroup>> getGroup() {
+        return group; 
     }
 
-    public void setDescriptorList(List<List<DescriptorGroup>> descriptorList) {
-        this.descriptorList = descriptorList;
+    public synchronized void setGroup(List<List<DescriptorGroup>> group) {
+        this.group = group; 
     }
 }
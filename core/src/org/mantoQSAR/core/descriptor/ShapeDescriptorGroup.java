@@ -25,11 +25,12 @@ package org.mantoQSAR.core.descriptor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import org.biojava.nbio.structure.Atom;
+import org.mantoQSAR.core.DescriptorContext;
 import org.mantoQSAR.core.DescriptorSet;
 import org.mantoQSAR.core.Molecule;
+import org.mantoQSAR.core.math.PointSet;
 import org.mantoQSAR.core.util.MoleculeTools;
 import org.mantoQSAR.core.util.Projection;
 
@@ -45,7 +46,11 @@ public class ShapeDescriptorGroup extends DescriptorGroup{
     
     
     public ShapeDescriptorGroup(int observationID, int descriptorID) {
-        super(observationID, descriptorID);
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public ShapeDescriptorGroup(DescriptorContext context) {
+        super(context);
     
         // number of descriptors in this group
         int nD = 11;
@@ -83,21 +88,18 @@ public class ShapeDescriptorGroup extends DescriptorGroup{
 
         Double[] centerPmass = MoleculeTools.getCenter(m.getAtomList(), atomMass);
         
-        List<Double[]> cPList = new ArrayList<>();
-        cPList.add(centerPmass);
+        PointSet cPList = new PointSet(1);
+        cPList.set(0, centerPmass[0], centerPmass[1], centerPmass[2]);
         Projection p = new Projection();
-        List<Double> radi = Arrays.asList(p.getAbsDistance(cPList, surfacePoints));
+        double[] radi = p.getAbsDistance(cPList, PointSet.fromList(surfacePoints));
         
-        List<Double> sortRadi = new ArrayList<>(); 
-        for (Double dd:radi){
-            sortRadi.add(dd); 
-        }
+        double[] sortRadi = radi.clone(); 
         
-        Collections.sort(sortRadi); 
-        int center = sortRadi.size()/2; 
-        double median = sortRadi.get(center);
-        double max = Collections.max(radi);
-        double min = Collections.min(radi);
+        Arrays.sort(sortRadi); 
+        int center = sortRadi.length/2; 
+        double median = sortRadi[center];
+        double max = sortRadi[sortRadi.length - 1];
+        double min = sortRadi[0];
         
         double res = Math.pow(descriptorSet.getSurface().getResolution(), 2); 
         
@@ -117,14 +119,14 @@ public class ShapeDescriptorGroup extends DescriptorGroup{
         
         descrList.add(new Descriptor("shapeFactor" + string, (max-min)/median));
         
-        descrList.add(new Descriptor("nSurfP" + string, (double) radi.size()));
-        descrList.add(new Descriptor("surfArea" + string, (double) radi.size()*res));
+        descrList.add(new Descriptor("nSurfP" + string, (double) radi.length));
+        descrList.add(new Descriptor("surfArea" + string, (double) radi.length*res));
 
         descrList.add(new Descriptor("nAtom" + string, (double) nAtom));
         descrList.add(new Descriptor("nAAcid" + string, (double) nAminoAcid));
         descrList.add(new Descriptor("mass" + string, mass));
 
-        descrList.add(new Descriptor("dens" + string, mass/(radi.size()*res)));
+        descrList.add(new Descriptor("dens" + string, mass/(radi.length*res)));
 
         descrList.add(new Descriptor("charge" + string, charge));
         descrList.add(new Descriptor("chargeDens" + string, charge/nAtom));
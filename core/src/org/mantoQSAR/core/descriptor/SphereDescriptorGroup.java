@@ -24,11 +24,13 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 package org.mantoQSAR.core.descriptor;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import org.mantoQSAR.core.DescriptorContext;
 import org.mantoQSAR.core.DescriptorSet;
 import org.mantoQSAR.core.Molecule;
 import org.mantoQSAR.core.math.Plane;
+import org.mantoQSAR.core.math.PointSet;
+import org.mantoQSAR.core.math.StatisticAccumulator;
 import org.mantoQSAR.core.util.Projection;
 
 public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
@@ -42,7 +44,11 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
     }
     
     public SphereDescriptorGroup(int observationID, int descriptorID) {
-        super(observationID, descriptorID);
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public SphereDescriptorGroup(DescriptorContext context) {
+        super(context);
 
         // number of descriptors in this group
         int nD = 34;
@@ -59,72 +65,41 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
         Molecule m = this.getMolecule();
         DescriptorSet descriptorSet = this.getDescriptorSet();
         
-        List<Double> valueMap;              
-        List<Double[]> surfacePoints = m.getSurface();
+        PointSet surfacePoints = m.getSurfacePoints();
 
         logger.info("surface points identified " + surfacePoints.size());
         
-        Projection p = new Projection(); 
-        
-        switch (descriptorSet.getSurface().getProperty()){
-            case "esp":
-                
-                // assumes atom charges to be coded as occupancy value in PQR file 
-                // according to PQR definition
-                valueMap = p.calcProjection(surfacePoints, 
-                        m.getAtomPosition(), 
-                        m.getOccupancy(), 
-                        descriptorSet.getSurface().getMapFunction(), 0.0);
-                 
-                break;
-                
-            case "hyd":
-                valueMap = p.calcProjection(surfacePoints, 
-                        m.getResiduePosition("mass"), 
-                        m.getHydrophobicityConstant(), 
-                        descriptorSet.getSurface().getMapFunction(), 0.0);
-                break; 
-                
-            default: 
-                logger.error("Property to be mapped in descriptor calculation not identified.");
-                
-                return;
+        double[] valueMap = m.getPropertyMap(descriptorSet.getSurface());
+        if(valueMap == null){
+            return; 
         }
         
-        p = null;
+        // grid of the plane values, shared by all orientations
+        this.getPlaneGrid(valueMap, "sphere");
 
-                for(Double[] vector1:this.vector){
-                   Plane plane = new Plane(m.getAtomList(), vector1,
+                this.calcOrientation((i) -> {
+                   Plane plane = m.getPlane(this.vector.get(i),
                            descriptorSet.getProjection().getSize(), 
                            descriptorSet.getProjection().getDensity(), 
                            descriptorSet.getProjection().getDistance());
-                    List<Double[]> planeP = plane.getPlane();
+                    PointSet planeP = plane.getPlane();
                 
                     logger.info("plane points identified " + planeP.size());
                     
-                    p = new Projection(); 
+                    // surface values in the default medium, projected onto the plane in the plane medium
+                    double[] valueMap2 = this.getPlaneValue(planeP, valueMap, "sphere");
                     
-                    List<Double> valueMap2 = p.calcProjection(planeP, 
-                            surfacePoints, 
-                            valueMap, 
-                            descriptorSet.getProjection().getMapFunction(), 
-                            0.0,            // minimum distance
-                            78.0,           // dielectric constant of medium
-                            this.getObservationSet().getCondition().getIonicStrength());
+                    logger.info("plane values mapped " + valueMap2.length);
                     
-                    p = null; 
-                    logger.info("plane values mapped " + valueMap2.size());
-                    
-                    p = new Projection();
-                    Double[] surface2Plane = p.getAbsDistance(surfacePoints, planeP);
-                    this.descriptorDetail.add((ArrayList<Descriptor>) this.calcDescriptorValue(valueMap2, surface2Plane));
-                }
+                    double[] surface2Plane = new Projection().getAbsDistance(m.getSurfaceCellList(), planeP);
+                    return this.calcDescriptorValue(valueMap2, surface2Plane);
+                });
                
                 this.descriptorList = this.calcAverage(); 
                
     }
 
-    private List<Descriptor> calcDescriptorValue(List<Double> valueMap, Double[] plane2surface) {
+    private List<Descriptor> calcDescriptorValue(double[] valueMap, double[] plane2surface) {
 
         DescriptorSet descriptorSet = this.getDescriptorSet();
         
@@ -137,15 +112,17 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
         string = "_" + string;
     }
 
-    List<Double> a_sasa = new ArrayList<>(); 
-        for(Double d:plane2surface){
+    double[] a_sasa = new double[plane2surface.length]; 
+    int nA = 0; 
+        for(double d:plane2surface){
             if (d < (2.8 + descriptorSet.getProjection().getDistance())) {
-                a_sasa.add(d);
+                a_sasa[nA] = d;
+                nA++; 
             }
         }
     
-        double sizeA = (double) a_sasa.size();
-        double size = (double) valueMap.size();
+        double sizeA = (double) nA;
+        double size = (double) valueMap.length;
         double res = Math.pow(descriptorSet.getSurface().getResolution(), 2); 
         
         
@@ -158,14 +135,15 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
         
         descrList.add(new Descriptor("nSurfP" + string, size));
         
-        double sum = 0.0;
-        for(Double dd:valueMap){
-            sum = sum +dd; 
-        }
+        double binScale = descriptorSet.getDescriptor().binScale;
+        int nBin = 10; 
+        StatisticAccumulator stat = StatisticAccumulator.of(valueMap, nBin, binScale);
+        
+        double sum = stat.getSum();
         
         double sumA = 0.0; 
-        for(Double dd:a_sasa){
-            sumA = sumA +dd; 
+        for(int ii = 0; ii < nA; ii++){
+            sumA = sumA +a_sasa[ii]; 
         }
         
         
@@ -178,27 +156,11 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
         descrList.add(new Descriptor(("mean" + string), mean));
         descrList.add(new Descriptor(("meanA" + string), meanA));
         
-        List<Double> sortValueMap = new ArrayList<>(); 
-        for (Double dd:valueMap){
-            sortValueMap.add(dd); 
-        }
-       
-        List<Double> sortSurfA = new ArrayList<>(); 
-        for (Double dd:a_sasa){
-            sortSurfA.add(dd); 
-        }
-        
-        Collections.sort(sortValueMap); 
-        Collections.sort(sortSurfA); 
-        
-        int center = sortValueMap.size()/2; 
-        int centerA = sortSurfA.size()/2;
+        double median = stat.getMedian();
+        double medianA = stat.getOrderStatistic(nA/2);
         
-        double median = sortValueMap.get(center);
-        double medianA = sortValueMap.get(centerA);
-        
-        double max = Collections.max(valueMap);
-        double min = Collections.min(valueMap);
+        double max = stat.getMax();
+        double min = stat.getMin();
         
         descrList.add(new Descriptor(("median" + string), median));
         descrList.add(new Descriptor(("medianSurfA" + string), medianA));
@@ -209,55 +171,27 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
         descrList.add(new Descriptor(("min" + string),min));
         
         descrList.add(new Descriptor(("devA" + string),(max - min)/median));
-        descrList.add(new Descriptor(("devB" + string),Collections.max(valueMap)));
+        descrList.add(new Descriptor(("devB" + string),max));
         
-        List<Double> posValueMap = new ArrayList<>(); 
-        List<Double> negValueMap = new ArrayList<>();
-        double sumPosVal = 0.0;
-        double sumNegVal = 0.0;
+        int nPosVal = stat.getPositiveCount(); 
+        int nNegVal = stat.getNegativeCount();
+        double sumPosVal = stat.getPositiveSum();
+        double sumNegVal = stat.getNegativeSum();
         
-        for (Double dd:valueMap){
-            if(dd > 0.0){
-            posValueMap.add(dd);
-            sumPosVal = sumPosVal + dd;}
-            if(dd < 0.0){
-            negValueMap.add(dd);
-            sumNegVal=sumNegVal + dd;
-            }
-        }
-        
-        descrList.add(new Descriptor(("nPos" + string), (double) posValueMap.size()));
-        descrList.add(new Descriptor(("nNeg" + string), (double) posValueMap.size()));
+        descrList.add(new Descriptor(("nPos" + string), (double) nPosVal));
+        descrList.add(new Descriptor(("nNeg" + string), (double) nPosVal));
         
-        descrList.add(new Descriptor(("relPos" + string), (double) posValueMap.size()/ valueMap.size()));
-        descrList.add(new Descriptor(("relNeg" + string), (double) posValueMap.size()/ valueMap.size()));
+        descrList.add(new Descriptor(("relPos" + string), (double) nPosVal/ valueMap.length));
+        descrList.add(new Descriptor(("relNeg" + string), (double) nPosVal/ valueMap.length));
         
         descrList.add(new Descriptor(("sumPos" + string), sumPosVal));
         descrList.add(new Descriptor(("sumNeg" + string), sumNegVal));
         
-        descrList.add(new Descriptor(("averPos" + string), sumPosVal/ posValueMap.size()));
-        descrList.add(new Descriptor(("averNeg" + string), sumNegVal/ negValueMap.size()));
-        
-        double binScale = descriptorSet.getDescriptor().binScale;
-        int nBin = 10; 
-        List<Double> binVal = new ArrayList<>();
-   
-   
-        for(int i =1; i <= nBin; i++){
-            double binLow= (-(binScale*nBin)*0.5) + (i)* binScale;
-            double binHigh = (-(binScale*nBin)*0.5) + (i+1)* binScale;
-            
-            double a = 0.0;
-        for (Double valueMap1 : valueMap) {
-            if (valueMap1 >= binLow && valueMap1 < binHigh) {
-                a = a+1;   
-            }
-        }
-        binVal.add(a);
-        }
+        descrList.add(new Descriptor(("averPos" + string), sumPosVal/ nPosVal));
+        descrList.add(new Descriptor(("averNeg" + string), sumNegVal/ nNegVal));
         
         for(int i = 0; i < nBin; i++){ 
-            descrList.add(new Descriptor(("binAbs" + string + "_" + i), (double) binVal.get(i)));
+            descrList.add(new Descriptor(("binAbs" + string + "_" + i), (double) stat.getBin(i)));
         }
         return descrList; 
     }
@@ -265,19 +199,15 @@ public final class SphereDescriptorGroup extends OrientationDescriptorGroup {
     private List<Descriptor> calcAverage() {
         
         List<Descriptor> descrList = new ArrayList<>();
-        int m = this.descriptorDetail.size();
-        int n = this.descriptorDetail.get(0).size();
+        int m = this.detail.getOrientationCount();
+        int n = this.detail.getDescriptorCount();
         
         for(int i = 0; i < n; i++){
-            Descriptor d = new Descriptor(this.descriptorDetail.get(0).get(i).getName(), 0.0);
+            Descriptor d = new Descriptor(this.detail.getName()[i], 0.0);
             double dd = 0.0; 
 
             for(int j = 0; j < m; j++){
-                try{
-                dd += this.descriptorDetail.get(j).get(i).getValue();
-                }catch(Exception e){
-                    logger.error(e.getMessage());
-                }
+                dd += this.detail.get(j, i);
             }
 
             d.value = dd/m; 
@@ -24,11 +24,12 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 package org.mantoQSAR.core.descriptor;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import org.mantoQSAR.core.DescriptorContext;
 import org.mantoQSAR.core.DescriptorSet;
 import org.mantoQSAR.core.Molecule;
-import org.mantoQSAR.core.util.Projection;
+import org.mantoQSAR.core.math.PointSet;
+import org.mantoQSAR.core.math.StatisticAccumulator;
 
 public final class SurfaceDescriptorGroup extends DescriptorGroup{
 
@@ -39,7 +40,11 @@ public final class SurfaceDescriptorGroup extends DescriptorGroup{
     }
     
     public SurfaceDescriptorGroup(int observationID, int descriptorID) {
-        super(observationID, descriptorID);
+        this(DescriptorContext.of(observationID, descriptorID));
+    }
+
+    public SurfaceDescriptorGroup(DescriptorContext context) {
+        super(context);
         
          this.valueMap = new ArrayList<>();
    
@@ -57,43 +62,22 @@ public final class SurfaceDescriptorGroup extends DescriptorGroup{
         
         Molecule m = this.getMolecule();
         DescriptorSet descriptorSet = this.getDescriptorSet();             
-        List<Double[]> surfacePoints = m.getSurface();
+        PointSet surfacePoints = m.getSurfacePoints();
 
-        this.valueMap = new ArrayList<>(surfacePoints.size());
-        
         logger.info("surface points identified " + surfacePoints.size());
-        Projection p = new Projection(); 
         
-        switch (descriptorSet.getSurface().getProperty()){
-            case "esp":
-                
-                // assumes atom charges to be coded as occupancy value in PQR file 
-                // according to PQR definition
-                this.valueMap = p.calcProjection(surfacePoints, 
-                        m.getAtomPosition(), 
-                        m.getOccupancy(), 
-                        descriptorSet.getSurface().getMapFunction(), 0.0);
-                break;
-                
-            case "hyd":
-                this.valueMap = p.calcProjection(surfacePoints, 
-                        m.getResiduePosition("mass"), 
-                        m.getHydrophobicityConstant(), 
-                        descriptorSet.getSurface().getMapFunction(), 0.0);
-                break; 
-                
-            default: 
-                logger.error("Property to be mapped in descriptor calculation not identified.");
-                return;
+        double[] surfaceValue = m.getPropertyMap(descriptorSet.getSurface());
+        if(surfaceValue == null){
+            return; 
         }
         
-        p = null; 
-                this.descriptorList = this.calcDescriptorValue(valueMap);
+                this.valueMap = PointSet.toList(surfaceValue);
+                this.descriptorList = this.calcDescriptorValue(surfaceValue);
                 
     }
 
     
-private List<Descriptor> calcDescriptorValue(List<Double> valueMap) {
+private List<Descriptor> calcDescriptorValue(double[] valueMap) {
       
     List<Descriptor> descrList = new ArrayList<>();
     DescriptorSet descriptorSet = this.getDescriptorSet();
@@ -101,33 +85,26 @@ private List<Descriptor> calcDescriptorValue(List<Double> valueMap) {
     stIdent = this.stIdent.substring(0,1).toUpperCase() + this.stIdent.substring(1); 
     stIdent = "_" + stIdent; 
     
-        double size = (double) valueMap.size();
+        double size = (double) valueMap.length;
         double res = Math.pow(descriptorSet.getSurface().getResolution(), 2); 
 
         double c = size / res; 
         descrList.add(new Descriptor("totalSurf", c));
         descrList.add(new Descriptor("nSurfP", size));
         
-        double sum = 0.0;
-        for(Double dd:valueMap){
-            sum = sum +dd; 
-        }
+        double binScale = descriptorSet.getDescriptor().binScale;
+        int nBin = 10; 
+        StatisticAccumulator stat = StatisticAccumulator.of(valueMap, nBin, binScale);
+        
+        double sum = stat.getSum();
         
         double mean = sum/size;
         descrList.add(new Descriptor(("sum" + stIdent), sum));
         descrList.add(new Descriptor(("mean" + stIdent), mean));
     
-        List<Double> sortValueMap = new ArrayList<>(); 
-        for (Double dd:valueMap){
-            sortValueMap.add(dd); 
-        }
-
-        Collections.sort(sortValueMap); 
-       
-        int center = sortValueMap.size()/2; 
-        double median = sortValueMap.get(center);
-        double max = Collections.max(valueMap);
-        double min = Collections.min(valueMap);
+        double median = stat.getMedian();
+        double max = stat.getMax();
+        double min = stat.getMin();
         
         descrList.add(new Descriptor(("median" + stIdent), median));
         descrList.add(new Descriptor(("meanRes" + stIdent), (mean)/res));
@@ -138,52 +115,25 @@ private List<Descriptor> calcDescriptorValue(List<Double> valueMap) {
         descrList.add(new Descriptor(("devA" + stIdent),(max - min)/median));
         descrList.add(new Descriptor(("devB" + stIdent),(max - min)/mean));
         
-        List<Double> posValueMap = new ArrayList<>(); 
-        List<Double> negValueMap = new ArrayList<>();
-        double sumPosVal = 0.0;
-        double sumNegVal = 0.0;
-        
-        for (Double dd:valueMap){
-            if(dd > 0.0){
-            posValueMap.add(dd);
-            sumPosVal = sumPosVal + dd;}
-            if(dd < 0.0){
-            negValueMap.add(dd);
-            sumNegVal=sumNegVal + dd;
-            }
-        }
+        int nPosVal = stat.getPositiveCount(); 
+        int nNegVal = stat.getNegativeCount();
+        double sumPosVal = stat.getPositiveSum();
+        double sumNegVal = stat.getNegativeSum();
 
-        descrList.add(new Descriptor(("nPos" + stIdent), (double) posValueMap.size()));
-        descrList.add(new Descriptor(("nNeg" + stIdent), (double) posValueMap.size()));
+        descrList.add(new Descriptor(("nPos" + stIdent), (double) nPosVal));
+        descrList.add(new Descriptor(("nNeg" + stIdent), (double) nPosVal));
         
-        descrList.add(new Descriptor(("relPos" + stIdent), (double) posValueMap.size()/ valueMap.size()));
-        descrList.add(new Descriptor(("relNeg" + stIdent), (double) posValueMap.size()/ valueMap.size()));
+        descrList.add(new Descriptor(("relPos" + stIdent), (double) nPosVal/ valueMap.length));
+        descrList.add(new Descriptor(("relNeg" + stIdent), (double) nPosVal/ valueMap.length));
         
         descrList.add(new Descriptor(("sumPos" + stIdent), sumPosVal));
         descrList.add(new Descriptor(("sumNeg" + stIdent), sumNegVal));
         
-        descrList.add(new Descriptor(("averPos" + stIdent), sumPosVal/ posValueMap.size()));
-        descrList.add(new Descriptor(("averNeg" + stIdent), sumNegVal/ negValueMap.size()));
-
-        double binScale = descriptorSet.getDescriptor().binScale;
-        int nBin = 10; 
-        List<Double> binVal = new ArrayList<>();
- 
-        for(int i =1; i <= nBin; i++){
-            double binLow= (-(binScale*nBin)*0.5) + (i)* binScale;
-            double binHigh = (-(binScale*nBin)*0.5) + (i+1)* binScale;
-             
-            double a = 0.0;
-        for (Double valueMap1 : valueMap) {
-            if (valueMap1 >= binLow && valueMap1 < binHigh) {
-                a = a+1;   
-            }
-        }
-        binVal.add(a);
-        }
+        descrList.add(new Descriptor(("averPos" + stIdent), sumPosVal/ nPosVal));
+        descrList.add(new Descriptor(("averNeg" + stIdent), sumNegVal/ nNegVal));
         
         for(int i = 0; i < nBin; i++){ 
-            descrList.add(new Descriptor(("binAbs" + stIdent + "_" + i), (double) binVal.get(i)/res));
+            descrList.add(new Descriptor(("binAbs" + stIdent + "_" + i), (double) stat.getBin(i)/res));
         }
 
         return descrList; 
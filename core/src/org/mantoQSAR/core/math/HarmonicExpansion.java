@@ -0,0 +1,195 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.math;
+
+import java.util.stream.IntStream;
+
+/*
+* spherical harmonic expansion of values distributed over directions, e.g.
+* surface values over the direction from the molecule center. Each channel
+* holds the coefficients c_lm = sum over points of value * Y_lm(direction).
+* Filtered sums over all directions, such as the sum of values within a cone
+* around a direction, are evaluated from the coefficients in O(degree^2).
+*/
+public class HarmonicExpansion {
+
+    private final int degree;
+    private final double[][] coefficient;
+
+    /*
+    * expansion of the values of each channel at the directions of the points
+    * relative to center
+    */
+    public HarmonicExpansion(int degree, PointSet point, double[] center, double[]... channel) {
+
+        this.degree = degree;
+        int nH = SphericalHarmonic.size(degree);
+        int nP = point.size();
+
+        // partial sums of blocks of points, added in block order
+        int nBlock = Math.max(1, Math.min(nP / 256, 4 * Runtime.getRuntime().availableProcessors()));
+        double[][][] partial = new double[nBlock][channel.length][nH];
+
+        IntStream.range(0, nBlock).parallel().forEach((b) -> {
+            double[] y = new double[nH];
+            for (int i = b; i < nP; i += nBlock) {
+                SphericalHarmonic.evaluate(degree, point.getX(i) - center[0], point.getY(i) - center[1],
+                        point.getZ(i) - center[2], y);
+                for (int c = 0; c < channel.length; c++) {
+                    double v = channel[c][i];
+                    if (v != 0.0) {
+                        double[] s = partial[b][c];
+                        for (int k = 0; k < nH; k++) {
+                            s[k] += v * y[k];
+                        }
+                    }
+                }
+            }
+        });
+
+        this.coefficient = new double[channel.length][nH];
+        for (int b = 0; b < nBlock; b++) {
+            for (int c = 0; c < channel.length; c++) {
+                for (int k = 0; k < nH; k++) {
+                    coefficient[c][k] += partial[b][c][k];
+                }
+            }
+        }
+    }
+
+    private HarmonicExpansion(int degree, double[][] coefficient) {
+        this.degree = degree;
+        this.coefficient = coefficient;
+    }
+
+    /*
+    * expansion convolved with a zonal kernel given by its factor per degree
+    */
+    public HarmonicExpansion filter(double[] factor) {
+
+        double[][] c = new double[coefficient.length][];
+        for (int ch = 0; ch < coefficient.length; ch++) {
+            c[ch] = coefficient[ch].clone();
+            for (int l = 0; l <= degree; l++) {
+                for (int m = -l; m <= l; m++) {
+                    c[ch][SphericalHarmonic.index(l, m)] *= factor[l];
+                }
+            }
+        }
+        return new HarmonicExpansion(degree, c);
+    }
+
+    /*
+    * factors of the cone kernel, 1 for directions within angle (rad) of the
+    * evaluated direction and 0 otherwise (Funk-Hecke theorem). Lanczos sigma
+    * factors damp the ringing of the truncated expansion.
+    */
+    public static double[] getConeFilter(int degree, double angle) {
+
+        double t = Math.cos(Math.min(Math.PI, Math.max(0.0, angle)));
+        double[] p = SphericalHarmonic.legendre(degree + 1, t);
+        double[] factor = new double[degree + 1];
+
+        for (int l = 0; l <= degree; l++) {
+            // integral of P_l from t to 1
+            double integral = (l == 0) ? 1.0 - t : (p[l - 1] - p[l + 1]) / (2.0 * l + 1.0);
+            double x = Math.PI * l / (degree + 1.0);
+            double sigma = (l == 0) ? 1.0 : Math.sin(x) / x;
+
+            // addition theorem: sum over m of Y_lm(u) Y_lm(d) = (2l + 1) / (4 pi) P_l(u . d)
+            factor[l] = 2.0 * Math.PI * integral * sigma;
+        }
+        return factor;
+    }
+
+    /*
+    * value of each channel at direction (x, y, z)
+    */
+    public double[] evaluate(double x, double y, double z) {
+
+        double[] h = new double[SphericalHarmonic.size(degree)];
+        SphericalHarmonic.evaluate(degree, x, y, z, h);
+
+        double[] v = new double[coefficient.length];
+        for (int c = 0; c < coefficient.length; c++) {
+            double s = 0.0;
+            for (int k = 0; k < h.length; k++) {
+                s += coefficient[c][k] * h[k];
+            }
+            v[c] = s;
+        }
+        return v;
+    }
+
+    /*
+    * sum over m of c_lm * Y_lm(x, y, z) for each channel and degree. The value
+    * filtered by a zonal kernel is the sum over l of factor[l] times these
+    * sums, so several kernels and channels share one harmonics evaluation.
+    */
+    public double[][] evaluateDegree(double x, double y, double z) {
+
+        double[] h = new double[SphericalHarmonic.size(degree)];
+        SphericalHarmonic.evaluate(degree, x, y, z, h);
+
+        double[][] v = new double[coefficient.length][degree + 1];
+        for (int c = 0; c < coefficient.length; c++) {
+            for (int l = 0; l <= degree; l++) {
+                double s = 0.0;
+                for (int m = -l; m <= l; m++) {
+                    int k = SphericalHarmonic.index(l, m);
+                    s += coefficient[c][k] * h[k];
+                }
+                v[c][l] = s;
+            }
+        }
+        return v;
+    }
+
+    /*
+    * rotation invariant power of each degree, sum over m of c_lm^2
+    */
+    public double[] getPower(int channel) {
+
+        double[] power = new double[degree + 1];
+        for (int l = 0; l <= degree; l++) {
+            for (int m = -l; m <= l; m++) {
+                double c = coefficient[channel][SphericalHarmonic.index(l, m)];
+                power[l] += c * c;
+            }
+        }
+        return power;
+    }
+
+    public int getDegree() {
+        return degree;
+    }
+
+    public int getChannelCount() {
+        return coefficient.length;
+    }
+
+    public double[] getCoefficient(int channel) {
+        return coefficient[channel].clone();
+    }
+}
@@ -63,6 +63,21 @@ public class Matrix {
 
     }
     
+    private Matrix(double[][] data, int n) {
+        
+        logger = LoggerFactory.getLogger(Matrix.class);
+        this.m = data.length;
+        this.n = n;
+        this.data = data;
+    }
+    
+    /*
+    * matrix on the rows of data without copying them, n columns
+    */
+    public static Matrix wrap(double[][] data, int n) {
+        return new Matrix(data, n);
+    }
+    
     private void calcParameter(){
         
          int nu = Math.min(m,n);
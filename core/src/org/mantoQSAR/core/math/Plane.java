@@ -22,21 +22,23 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 
 package org.mantoQSAR.core.math;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import org.apache.commons.lang3.ArrayUtils;
 import org.biojava.nbio.structure.Atom;
 import org.mantoQSAR.core.util.MoleculeTools;
-import org.mantoQSAR.core.util.Projection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/*
+* square grid of points perpendicular to a direction vector, placed at a given
+* distance beyond the outermost atom center in that direction.
+* The grid is spanned by the orthonormal basis (axisU, axisV, normal); grid
+* point (i, j) is origin + axisU * density * i + axisV * density * j and has
+* index i * count + j in the point set.
+*/
 public class Plane{
     
    Logger logger;
-   List<Double[]> planePoints;  
+   PointSet planePoints;  
    Double dielectricConstant = 2.0; 
    Double minDistance = 0.0; 
    String type; 
@@ -50,6 +52,14 @@ public class Plane{
    
    
    List<Atom> atomList;
+   
+   private final double[] normal = new double[3];
+   private final double[] axisU = new double[3];
+   private final double[] axisV = new double[3];
+   private final double[] center = new double[3];
+   private final double[] origin = new double[3];
+   private double offset;
+   private int count;
 
     public Plane(List<Atom> atomList, Double[] vector, Double size, Double density, Double distance){
         
@@ -61,179 +71,243 @@ public class Plane{
         this.size = size; 
         this.density = density; 
         this.distance = distance; 
-        planePoints = new ArrayList<>(); 
-
+        planePoints = null; 
+        
+        this.calcGeometry(atomList, vector, size, density, distance);
     }
 
-    public List<Double[]> getPlane(){
-        planePoints.clear();
-        planePoints = this.calcPlane(this.atomList, this.vector, this.size, density, distance);
+    public synchronized PointSet getPlane(){
+        if(planePoints == null){
+            planePoints = this.calcGrid();
+        }
         return planePoints; 
     }
     
-    public List<Double[]> calcPlane(List<Atom> atomList, Double[] vector, Double size, Double density, Double distance) {
-
-        List<Double[]> planeP = new ArrayList<>();
+    public PointSet calcPlane(List<Atom> atomList, Double[] vector, Double size, Double density, Double distance) {
+        
+        this.calcGeometry(atomList, vector, size, density, distance);
+        planePoints = this.calcGrid();
+        return planePoints;
+    }
+    
+    /*
+    * basis, position and grid size of the plane. The plane is moved along the
+    * normal to the largest projection of an atom center plus distance.
+    */
+    private void calcGeometry(List<Atom> atomList, Double[] vector, Double size, Double density, Double distance) {
          
-        Double oldSize = size;
-        Double dp = Math.ceil(size / density);
-        size = density * dp;
+        count = (int) Math.ceil(size / density); 
+        double gridSize = density * count;
 
-        if (!oldSize.equals(size)) {
-            logger.info("Plane size recalculated to " + size.toString());
+        if (gridSize != size) {
+            logger.info("Plane size recalculated to " + gridSize);
         }
         
+        double n = Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1] + vector[2] * vector[2]);
+        for (int k = 0; k < 3; k++) {
+            normal[k] = vector[k] / n;
+        }
+        
+        this.calcBasis();
         
-        List<Double[]> refP = MoleculeTools.getAtomPosition(atomList);
-
         Double[] cP = MoleculeTools.getCenter(atomList);
-
-        for (int i = 0; i < vector.length; i++) {
-            vector[i] = vector[i] / Vector.norm(vector);
-        }
-            
-       // center of plane to be build
-        Double[] pSn = new Double[3];
-
-        for (int i = 0; i < 3; i++) {
-            pSn[i] = cP[i] + (vector[i] * 400);
-        }
-        // use start vectors in 3 directions to reduce error by limitation of double number
-        Double[] vec1a = new Double[]{1.0, 1.0, 0.0};
-        Double[] vec1b = new Double[]{1.0, 0.0, 0.0};
-        Double[] vec1c = new Double[]{0.0, 1.0, 0.0};
-        vec1a[2] = (((vec1a[0] * vector[0]) + (vec1a[1] * vector[1])) / vector[2])*-1;
-        vec1b[2] = (((vec1b[0] * vector[0]) + (vec1b[1] * vector[1])) / vector[2])*-1;
-        vec1c[2] = (((vec1c[0] * vector[0]) + (vec1c[1] * vector[1])) / vector[2])*-1;
-        
-        // norm vec1s before use
-        for (int i = 0; i < vec1a.length; i++) {
-            vec1a[i] = vec1a[i] / Vector.norm(vec1a);
-            vec1b[i] = vec1b[i] / Vector.norm(vec1b);
-            vec1c[i] = vec1c[i] / Vector.norm(vec1c);
+        PointSet refP = MoleculeTools.getAtomPosition(atomList);
+        
+        double maxProjection = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < refP.size(); i++) {
+            double d = (refP.getX(i) - cP[0]) * normal[0] 
+                     + (refP.getY(i) - cP[1]) * normal[1] 
+                     + (refP.getZ(i) - cP[2]) * normal[2];
+            if (d > maxProjection) {
+                maxProjection = d;
+            }
         }
-
-        Double[] vec2a = Vector.crossProduct(vector, vec1a);
-        Double[] vec2b = Vector.crossProduct(vector, vec1b);
-        Double[] vec2c = Vector.crossProduct(vector, vec1c);
         
-        Double[] vec3a = Vector.crossProduct(vec1a, vec2a);
-        Double[] vec3b = Vector.crossProduct(vec1b, vec2b);
-        Double[] vec3c = Vector.crossProduct(vec1c, vec2c);
+        offset = maxProjection + distance;
         
-         // norm vec1s before use
-        for (int i = 0; i < vec3a.length; i++) {
-            vec3a[i] = vec3a[i] / Vector.norm(vec3a);
-            vec3b[i] = vec3b[i] / Vector.norm(vec3b);
-            vec3c[i] = vec3c[i] / Vector.norm(vec3c);
+        for (int k = 0; k < 3; k++) {
+            center[k] = cP[k] + normal[k] * offset;
+            origin[k] = center[k] - axisU[k] * (gridSize / 2) - axisV[k] * (gridSize / 2);
         }
+    }
+    
+    /*
+    * in plane axes. Start vectors with unit x and y component are completed to
+    * be perpendicular to the normal; the one with the smallest round off error
+    * is taken. For normals in the x-y plane the z axis is used.
+    */
+    private void calcBasis() {
         
-        // difference between start vector and vector of back projection
-        Double aa = Math.abs(vec3a[0]-vector[0]) + Math.abs(vec3a[1]-vector[1]) + Math.abs(vec3a[2]-vector[2]);
-        Double ab = Math.abs(vec3b[0]-vector[0]) + Math.abs(vec3b[1]-vector[1]) + Math.abs(vec3b[2]-vector[2]);
-        Double ac = Math.abs(vec3c[0]-vector[0]) + Math.abs(vec3c[1]-vector[1]) + Math.abs(vec3c[2]-vector[2]);
-
-        Double[] vec1;
-        Double[] vec2;
-        
-        
-        if (aa <= ab & aa <= ac) {
-            // take vector a
-            vec1 = ArrayUtils.clone(vec1a);
-            vec2 = ArrayUtils.clone(vec2a);
-        } else {
-            if (ab <= aa & ab <= ac) {
-                // take vector b
-                vec1 = ArrayUtils.clone(vec1b);
-                vec2 = ArrayUtils.clone(vec2b);
-            } else {
-                // take vector c
-                vec1 = ArrayUtils.clone(vec1c);
-                vec2 = ArrayUtils.clone(vec2c);
-            }
+        if (Math.abs(normal[2]) < 1e-6) {
+            double[] u = new double[]{0.0, 0.0, 1.0};
+            Plane.orthonormalize(u, normal);
+            Plane.setBasis(u, normal, axisU, axisV);
+            return;
         }
-
-        // for debuging cross product of vec1 and vec2 should be vector
-        Double[] vecCross= Vector.crossProduct(vec1a, vec2);
-        // norm vec1 before use
-        for (int i = 0; i < vecCross.length; i++) {
-            vecCross[i] = vecCross[i] / Vector.norm(vecCross);
+        
+        double[][] start = new double[][]{{1.0, 1.0, 0.0}, {1.0, 0.0, 0.0}, {0.0, 1.0, 0.0}};
+        double best = Double.POSITIVE_INFINITY;
+        
+        for (double[] u : start) {
+            u[2] = -((u[0] * normal[0]) + (u[1] * normal[1])) / normal[2];
+            Plane.normalize(u);
+            
+            double[] v = Plane.cross(normal, u);
+            double[] back = Plane.cross(u, v);
+            Plane.normalize(back);
+            
+            // difference between normal and its back projection
+            double err = Math.abs(back[0] - normal[0]) + Math.abs(back[1] - normal[1]) + Math.abs(back[2] - normal[2]);
+            if (err < best) {
+                best = err;
+                Plane.setBasis(u, normal, axisU, axisV);
+            }
         }
+    }
+    
+    private static void setBasis(double[] u, double[] normal, double[] axisU, double[] axisV) {
         
-        for (int i = 0; i < vec1.length; i++) {
-            vec1[i] = vec1[i] / Vector.norm(vec1);
-            vec2[i] = vec2[i] / Vector.norm(vec2);
-
+        double[] v = Plane.cross(normal, u);
+        Plane.normalize(v);
+        System.arraycopy(u, 0, axisU, 0, 3);
+        System.arraycopy(v, 0, axisV, 0, 3);
+    }
+    
+    private static void orthonormalize(double[] u, double[] normal) {
+        
+        double d = u[0] * normal[0] + u[1] * normal[1] + u[2] * normal[2];
+        for (int k = 0; k < 3; k++) {
+            u[k] = u[k] - d * normal[k];
         }
+        Plane.normalize(u);
+    }
+    
+    private static void normalize(double[] u) {
         
-        Double[] pPlaneEdge = new Double[3];
-
-        // get edge point of plane
-        for (int i = 0; i < pSn.length; i++) {
-            pPlaneEdge[i] = pSn[i] - (vec1[i] * (size/2)) - (vec2[i] * (size/2)); 
+        double n = Math.sqrt(u[0] * u[0] + u[1] * u[1] + u[2] * u[2]);
+        for (int k = 0; k < 3; k++) {
+            u[k] = u[k] / n;
         }
-        Double count = (size / density); 
-        List<Double[]> M = new ArrayList<>(); 
+    }
+    
+    private static double[] cross(double[] a, double[] b) {
+        return new double[]{a[1] * b[2] - a[2] * b[1], 
+                            a[2] * b[0] - a[0] * b[2], 
+                            a[0] * b[1] - a[1] * b[0]};
+    }
+    
+    private PointSet calcGrid() {
+        
+        PointSet M = new PointSet(count * count); 
 
         for(int i = 0; i < count; i++){
             for(int j = 0; j < count; j++){
-                
-                Double[] point = new Double[3];
-                for(int k =0; k < 3; k++){
-                    point[k] = pPlaneEdge[k] + vec1[k]*density*i + vec2[k]*density*j; 
-                }
-                M.add(point);
+                double a = density * i;
+                double b = density * j;
+                M.set(i * count + j, 
+                        origin[0] + axisU[0] * a + axisV[0] * b, 
+                        origin[1] + axisU[1] * a + axisV[1] * b, 
+                        origin[2] + axisU[2] * a + axisV[2] * b); 
              }
         }
- 
-        Double minD2Plane = Projection.getMinAbsDistance(M, refP);
-
-        for (int i = 0; i < vector.length; i++) {
-            vector[i] = vector[i] / Vector.norm(vector);
-        }
+        return M; 
+    }
+    
+    /*
+    * coordinates of a point in the plane basis: position along axisU and axisV
+    * relative to the grid origin and height above the plane
+    */
+    public double[] toPlaneCoordinates(double x, double y, double z) {
+        
+        double dx = x - origin[0];
+        double dy = y - origin[1];
+        double dz = z - origin[2];
+        
+        return new double[]{dx * axisU[0] + dy * axisU[1] + dz * axisU[2], 
+                            dx * axisV[0] + dy * axisV[1] + dz * axisV[2], 
+                            dx * normal[0] + dy * normal[1] + dz * normal[2]};
+    }
+    
+    /*
+    * distance of a point to the closest grid point, without building the grid
+    */
+    public double distanceToGrid(double x, double y, double z) {
+        
+        double dx = x - origin[0];
+        double dy = y - origin[1];
+        double dz = z - origin[2];
+        
+        double u = dx * axisU[0] + dy * axisU[1] + dz * axisU[2];
+        double v = dx * axisV[0] + dy * axisV[1] + dz * axisV[2];
+        double h = dx * normal[0] + dy * normal[1] + dz * normal[2];
+        
+        double du = u - density * this.gridIndex(u);
+        double dv = v - density * this.gridIndex(v);
+        
+        return Math.sqrt(du * du + dv * dv + h * h);
+    }
+    
+    private int gridIndex(double c) {
         
-        Double[] corVec = new Double[]{vector[0] * minD2Plane, vector[1] * minD2Plane, vector[2] * minD2Plane};
-       
-        Double corLength = Math.sqrt(Math.pow(corVec[0], 2) + Math.pow(corVec[1], 2) + Math.pow(corVec[2], 2));
-       
-        List<Double[]> planeCorrected = new ArrayList<>();
-        
-        for (Double[] M1 : M) {
-            Double[] p = new Double[3];
-            p[0] = M1[0] - corVec[0];
-            p[1] = M1[1] - corVec[1];
-            p[2] = M1[2] - corVec[2];
-            planeCorrected.add(p);
+        long i = Math.round(c / density);
+        if (i < 0) {
+            return 0;
         }
-
-        // add distance according to parameter set
-        Double corDistance = distance - (minD2Plane - corLength); 
-        Double[] distVec = new Double[]{vector[0] * corDistance, vector[1] * corDistance, vector[2] * corDistance};
-
-        planeP.clear();
-        for (Double[] M1 : planeCorrected) {
-            Double[] pp = new Double[3];
-            pp[0] = M1[0] + distVec[0];
-            pp[1] = M1[1] + distVec[1];
-            pp[2] = M1[2] + distVec[2];
-            planeP.add(pp);
+        if (i >= count) {
+            return count - 1;
         }
-        
-        return planeP; 
+        return (int) i;
     }
 
-    public Double[] getAbsDistance(List<Double[]> struct){ 
-        Projection p = new Projection();
-        return p.getAbsDistance(this.planePoints, struct); 
+    public double[] getAbsDistance(PointSet struct){ 
+        
+        double[] d2Plane = new double[struct.size()];
+        for (int i = 0; i < struct.size(); i++) {
+            d2Plane[i] = this.distanceToGrid(struct.getX(i), struct.getY(i), struct.getZ(i));
+        }
+        return d2Plane; 
     }
   
-    public Double getMinAbsDistance(List<Double[]> struct) {
+    public double getMinAbsDistance(PointSet struct) {
 
-        Double[] d2Plane = this.getAbsDistance(struct);
-        Double dist = Collections.min(Arrays.asList(d2Plane));
+        double dist = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < struct.size(); i++) {
+            dist = Math.min(dist, this.distanceToGrid(struct.getX(i), struct.getY(i), struct.getZ(i)));
+        }
         return dist;
     }
 
+    public double[] getNormal() {
+        return normal.clone();
+    }
+
+    public double[] getAxisU() {
+        return axisU.clone();
+    }
+
+    public double[] getAxisV() {
+        return axisV.clone();
+    }
+
+    public double[] getOrigin() {
+        return origin.clone();
+    }
+
+    public double[] getCenter() {
+        return center.clone();
+    }
+
+    /*
+    * position of the plane along the normal relative to the molecule center
+    */
+    public double getOffset() {
+        return offset;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
     public Double getDielectricConstant() {
         return dielectricConstant;
     }
@@ -0,0 +1,220 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* point coordinates stored as contiguous primitive arrays (structure of arrays)
+* with an optional value per point
+*/
+public class PointSet {
+
+    private final int size;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private double[] value;
+
+    public PointSet(int size) {
+        this(new double[size], new double[size], new double[size]);
+    }
+
+    public PointSet(double[] x, double[] y, double[] z) {
+        this(x, y, z, null);
+    }
+
+    public PointSet(double[] x, double[] y, double[] z, double[] value) {
+
+        if (x.length != y.length || x.length != z.length) {
+            throw new IllegalArgumentException("Coordinate arrays differ in length.");
+        }
+        if (value != null && value.length != x.length) {
+            throw new IllegalArgumentException("Each point should have a value.");
+        }
+
+        this.size = x.length;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.value = value;
+    }
+
+    public static PointSet fromList(List<Double[]> points) {
+
+        PointSet ps = new PointSet(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            Double[] p = points.get(i);
+            ps.x[i] = p[0];
+            ps.y[i] = p[1];
+            ps.z[i] = p[2];
+        }
+        return ps;
+    }
+
+    public static PointSet fromList(List<Double[]> points, List<Double> value) {
+
+        PointSet ps = PointSet.fromList(points);
+        ps.setValue(PointSet.toArray(value));
+        return ps;
+    }
+
+    public static double[] toArray(List<Double> value) {
+
+        double[] v = new double[value.size()];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = value.get(i);
+        }
+        return v;
+    }
+
+    public static List<Double> toList(double[] value) {
+
+        List<Double> v = new ArrayList<>(value.length);
+        for (double d : value) {
+            v.add(d);
+        }
+        return v;
+    }
+
+    public List<Double[]> toList() {
+
+        List<Double[]> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(new Double[]{x[i], y[i], z[i]});
+        }
+        return points;
+    }
+
+    /*
+    * coordinates as one interleaved array x0, y0, z0, x1, ...
+    */
+    public double[] toInterleaved() {
+
+        double[] xyz = new double[3 * size];
+        for (int i = 0; i < size; i++) {
+            xyz[3 * i] = x[i];
+            xyz[3 * i + 1] = y[i];
+            xyz[3 * i + 2] = z[i];
+        }
+        return xyz;
+    }
+
+    /*
+    * points (and values) selected by mask
+    */
+    public PointSet subset(boolean[] mask) {
+
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (mask[i]) {
+                n++;
+            }
+        }
+
+        PointSet ps = new PointSet(n);
+        double[] v = (value == null) ? null : new double[n];
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (mask[i]) {
+                ps.x[j] = x[i];
+                ps.y[j] = y[i];
+                ps.z[j] = z[i];
+                if (v != null) {
+                    v[j] = value[i];
+                }
+                j++;
+            }
+        }
+        ps.value = v;
+        return ps;
+    }
+
+    public double[] getCenter() {
+
+        double[] c = new double[3];
+        for (int i = 0; i < size; i++) {
+            c[0] += x[i];
+            c[1] += y[i];
+            c[2] += z[i];
+        }
+        for (int k = 0; k < 3; k++) {
+            c[k] = c[k] / size;
+        }
+        return c;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+
+    public void set(int i, double px, double py, double pz) {
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    public double[] getValue() {
+        return value;
+    }
+
+    public void setValue(double[] value) {
+        if (value != null && value.length != size) {
+            throw new IllegalArgumentException("Each point should have a value.");
+        }
+        this.value = value;
+    }
+
+    public boolean hasValue() {
+        return value != null;
+    }
+}
@@ -0,0 +1,116 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.math;
+
+/*
+* real orthonormal spherical harmonics Y_lm of unit directions. Degree l and
+* order m (-l <= m <= l) are stored at index l * l + l + m, orders m > 0 use
+* cos(m phi), m < 0 use sin(|m| phi).
+*/
+public abstract class SphericalHarmonic {
+
+    public static int index(int l, int m) {
+        return l * l + l + m;
+    }
+
+    /*
+    * number of harmonics up to degree
+    */
+    public static int size(int degree) {
+        return (degree + 1) * (degree + 1);
+    }
+
+    /*
+    * all harmonics up to degree at direction (x, y, z), written to out.
+    * The direction does not need to be normalized.
+    */
+    public static void evaluate(int degree, double x, double y, double z, double[] out) {
+
+        double r = Math.sqrt(x * x + y * y + z * z);
+        double ct = (r > 0.0) ? z / r : 1.0;
+        double rxy = Math.sqrt(x * x + y * y);
+        double st = (r > 0.0) ? rxy / r : 0.0;
+        double cp = (rxy > 0.0) ? x / rxy : 1.0;
+        double sp = (rxy > 0.0) ? y / rxy : 0.0;
+
+        // normalized associated Legendre functions, column m at a time
+        double pmm = Math.sqrt(0.25 / Math.PI);
+        double cm = 1.0;   // cos(m phi)
+        double sm = 0.0;   // sin(m phi)
+
+        for (int m = 0; m <= degree; m++) {
+
+            if (m > 0) {
+                pmm = pmm * st * Math.sqrt((2.0 * m + 1.0) / (2.0 * m));
+                double c = cm * cp - sm * sp;
+                sm = sm * cp + cm * sp;
+                cm = c;
+            }
+
+            double scale = (m == 0) ? 1.0 : Math.sqrt(2.0);
+            SphericalHarmonic.set(out, m, m, scale * pmm, cm, sm);
+
+            double p2 = pmm;
+            double p1 = Math.sqrt(2.0 * m + 3.0) * ct * pmm;
+            if (m < degree) {
+                SphericalHarmonic.set(out, m + 1, m, scale * p1, cm, sm);
+            }
+
+            for (int l = m + 2; l <= degree; l++) {
+                double a = Math.sqrt((4.0 * l * l - 1.0) / ((double) l * l - (double) m * m));
+                double b = Math.sqrt(((l - 1.0) * (l - 1.0) - (double) m * m) / (4.0 * (l - 1.0) * (l - 1.0) - 1.0));
+                double p = a * (ct * p1 - b * p2);
+                SphericalHarmonic.set(out, l, m, scale * p, cm, sm);
+                p2 = p1;
+                p1 = p;
+            }
+        }
+    }
+
+    private static void set(double[] out, int l, int m, double p, double cm, double sm) {
+
+        if (m == 0) {
+            out[index(l, 0)] = p;
+        } else {
+            out[index(l, m)] = p * cm;
+            out[index(l, -m)] = p * sm;
+        }
+    }
+
+    /*
+    * Legendre polynomials P_0 to P_degree at t
+    */
+    public static double[] legendre(int degree, double t) {
+
+        double[] p = new double[degree + 1];
+        p[0] = 1.0;
+        if (degree > 0) {
+            p[1] = t;
+        }
+        for (int l = 2; l <= degree; l++) {
+            p[l] = ((2.0 * l - 1.0) * t * p[l - 1] - (l - 1.0) * p[l - 2]) / l;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,270 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.math;
+
+/*
+* single pass statistics of a value map: sum, extrema, positive and negative
+* counts and sums and a fixed width histogram. Order statistics (median) are
+* found by selection on a copy of the values instead of a full sort.
+*
+* Histogram bin j covers [edge(j + 1), edge(j + 2)) with
+* edge(i) = -(binScale * nBin) / 2 + i * binScale, the binning used by the
+* descriptor groups.
+*/
+public class StatisticAccumulator {
+
+    private int count = 0;
+    private double sum = 0.0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    private int nPos = 0;
+    private int nNeg = 0;
+    private double sumPos = 0.0;
+    private double sumNeg = 0.0;
+
+    private final int nBin;
+    private final double binScale;
+    private final double binOrigin;
+    private final int[] bin;
+
+    private double[] values = null;
+    private double[] scratch = null;
+
+    public StatisticAccumulator() {
+        this(0, 0.0);
+    }
+
+    public StatisticAccumulator(int nBin, double binScale) {
+        this.nBin = nBin;
+        this.binScale = binScale;
+        this.binOrigin = -(binScale * nBin) * 0.5;
+        this.bin = new int[nBin];
+    }
+
+    /*
+    * accumulates all values; the array is kept for order statistics and must
+    * not be changed afterwards
+    */
+    public static StatisticAccumulator of(double[] values, int nBin, double binScale) {
+
+        StatisticAccumulator acc = new StatisticAccumulator(nBin, binScale);
+        acc.addAll(values);
+        return acc;
+    }
+
+    public void addAll(double[] v) {
+
+        for (double d : v) {
+            this.add(d);
+        }
+        this.values = v;
+        this.scratch = null;
+    }
+
+    public void add(double v) {
+
+        if (count == 0) {
+            min = v;
+            max = v;
+        } else {
+            // same ordering as Arrays.sort, NaN is the largest value
+            if (Double.compare(v, min) < 0) {
+                min = v;
+            }
+            if (Double.compare(v, max) > 0) {
+                max = v;
+            }
+        }
+
+        count++;
+        sum = sum + v;
+
+        if (v > 0.0) {
+            nPos++;
+            sumPos = sumPos + v;
+        }
+        if (v < 0.0) {
+            nNeg++;
+            sumNeg = sumNeg + v;
+        }
+
+        if (nBin > 0 && binScale > 0.0) {
+            this.addToBin(v);
+        }
+    }
+
+    private double edge(int i) {
+        return binOrigin + i * binScale;
+    }
+
+    private void addToBin(double v) {
+
+        double t = Math.floor((v - binOrigin) / binScale);
+        if (Double.isNaN(t)) {
+            return;
+        }
+
+        // candidate edge index from division, corrected against the exact edges
+        int i = (int) Math.max(0.0, Math.min(nBin + 1.0, t));
+        while (i > 0 && v < this.edge(i)) {
+            i--;
+        }
+        while (i <= nBin && v >= this.edge(i + 1)) {
+            i++;
+        }
+
+        if (i >= 1 && i <= nBin && v >= this.edge(i)) {
+            bin[i - 1]++;
+        }
+    }
+
+    /*
+    * k-th smallest value (0 based) of the values given to addAll
+    */
+    public double getOrderStatistic(int k) {
+
+        if (values == null) {
+            throw new IllegalStateException("Order statistics need the values passed by addAll.");
+        }
+        if (scratch == null) {
+            scratch = values.clone();
+        }
+        return StatisticAccumulator.select(scratch, k);
+    }
+
+    public double getMedian() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return this.getOrderStatistic(count / 2);
+    }
+
+    /*
+    * k-th smallest element by quickselect, partially reorders a
+    */
+    public static double select(double[] a, int k) {
+
+        if (k < 0 || k >= a.length) {
+            throw new ArrayIndexOutOfBoundsException(k);
+        }
+
+        int lo = 0;
+        int hi = a.length - 1;
+
+        while (hi > lo) {
+
+            // median of three pivot
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(a[mid], a[lo]) < 0) {
+                swap(a, lo, mid);
+            }
+            if (Double.compare(a[hi], a[lo]) < 0) {
+                swap(a, lo, hi);
+            }
+            if (Double.compare(a[hi], a[mid]) < 0) {
+                swap(a, mid, hi);
+            }
+            double pivot = a[mid];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (Double.compare(a[i], pivot) < 0) {
+                    i++;
+                }
+                while (Double.compare(a[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return a[k];
+            }
+        }
+        return a[k];
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return sum / count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getPositiveCount() {
+        return nPos;
+    }
+
+    public int getNegativeCount() {
+        return nNeg;
+    }
+
+    public double getPositiveSum() {
+        return sumPos;
+    }
+
+    public double getNegativeSum() {
+        return sumNeg;
+    }
+
+    public int getBinCount() {
+        return nBin;
+    }
+
+    public int getBin(int j) {
+        return bin[j];
+    }
+
+    public int[] getHistogram() {
+        return bin.clone();
+    }
+}
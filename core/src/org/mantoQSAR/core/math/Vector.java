@@ -22,12 +22,15 @@
 package org.mantoQSAR.core.math;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class Vector {
 
+    // orientation sets by point count, see calcSphere
+    private static final Map<Integer, List<Double[]>> sphereCache = new ConcurrentHashMap<>();
+
     public static Double norm(Double[] vector) {
 
         Double a = 0.0;
@@ -206,87 +209,72 @@ public abstract class Vector {
         return sphere;
     }
 
-    public static List<Double[]> calcSphere(int nPoint) {
-
-        if (nPoint == 120) {
-            return Vector.getSphere120();
-        }
+    /*
+    * nPoint unit vectors evenly spread on the sphere along a Fibonacci
+    * spiral, deterministic for a given count
+    */
+    public static List<Double[]> calcFibonacciSphere(int nPoint) {
 
-        Random random = new Random();
-        Double k = 0.1; // stepsize
-        Double smudge = 0.001;
-        Double tol = 0.001; // tolerance setting
+        List<Double[]> sphere = new ArrayList<>(Math.max(0, nPoint));
+        double golden = Math.PI * (3.0 - Math.sqrt(5.0));
 
-        List<Double[]> sphere = new ArrayList<>();
-        System.out.println("Sphere of " + nPoint + " points");
         for (int i = 0; i < nPoint; i++) {
-
-            Double[] vec = new Double[3];
-            for (int ii = 0; ii < 3; ii++) {
-
-                vec[ii] = random.nextGaussian();
-                System.out.print(vec[ii] + "; ");
-            }
-            sphere.add(vec);
-            System.out.println("");
+            double z = 1.0 - (2.0 * i + 1.0) / nPoint;
+            double r = Math.sqrt(1.0 - z * z);
+            double phi = golden * i;
+            sphere.add(new Double[]{r * Math.cos(phi), r * Math.sin(phi), z});
         }
+        return sphere;
+    }
 
-        Double delta = 100.0;
-
-        while (delta > tol) {
-            delta = 0.0;
-
-            for (int kk = 0; kk < sphere.size(); kk++) {
-
-                Double[] vec = Arrays.copyOf(sphere.get(kk), 3);
-
-                List<Double[]> dx = new ArrayList<>();
-                List<Double> d = new ArrayList<>();
-
-                for (Double[] sphere1 : sphere) {
-                    Double[] b = new Double[3];
-                    Double a = 0.0;
-                    for (int j = 0; j < 3; j++) {
-                        b[j] = vec[j] - sphere1[j];
-                        a = a + (Math.pow(b[j], 2));
-                    }
-                    dx.add(b);
-                    d.add(a);
-                }
-
-                Double fxx = 0.0;
-                Double fxy = 0.0;
-                Double fxz = 0.0;
-
-                for (int i = 0; i < sphere.size(); i++) {
-                    fxx = fxx + (dx.get(i)[0] / (smudge + d.get(i)));
-                    fxy = fxy + (dx.get(i)[1] / (smudge + d.get(i)));
-                    fxz = fxz + (dx.get(i)[2] / (smudge + d.get(i)));
-                }
-
-                Double[] xold = Arrays.copyOf(vec, 3);
-
-                vec[0] = vec[0] + k * fxx;
-                vec[1] = vec[1] + k * fxy;
-                vec[2] = vec[2] + k * fxz;
+    /*
+    * nPoint unit vectors at the given angle (rad) around the unit vector
+    * center, evenly spaced in azimuth
+    */
+    public static List<Double[]> calcNeighbour(Double[] center, double angle, int nPoint) {
+
+        double n = Vector.norm(center);
+        double[] c = new double[]{center[0] / n, center[1] / n, center[2] / n};
+
+        // axis least aligned with center gives a stable perpendicular basis
+        double[] a = (Math.abs(c[0]) < 0.9) ? new double[]{1.0, 0.0, 0.0} : new double[]{0.0, 1.0, 0.0};
+        double[] u = new double[]{c[1] * a[2] - c[2] * a[1], c[2] * a[0] - c[0] * a[2], c[0] * a[1] - c[1] * a[0]};
+        double nu = Math.sqrt(u[0] * u[0] + u[1] * u[1] + u[2] * u[2]);
+        for (int k = 0; k < 3; k++) {
+            u[k] = u[k] / nu;
+        }
+        double[] w = new double[]{c[1] * u[2] - c[2] * u[1], c[2] * u[0] - c[0] * u[2], c[0] * u[1] - c[1] * u[0]};
 
-                Double nv = Vector.norm(vec);
-                vec[0] = vec[0] / nv;
-                vec[1] = vec[1] / nv;
-                vec[2] = vec[2] / nv;
+        List<Double[]> neighbour = new ArrayList<>(nPoint);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
 
-                Double[] dVec = new Double[3];
-                dVec[0] = xold[0] - vec[0];
-                dVec[1] = xold[1] - vec[1];
-                dVec[2] = xold[2] - vec[2];
+        for (int i = 0; i < nPoint; i++) {
+            double phi = 2.0 * Math.PI * i / nPoint;
+            Double[] v = new Double[3];
+            for (int k = 0; k < 3; k++) {
+                v[k] = cos * c[k] + sin * (Math.cos(phi) * u[k] + Math.sin(phi) * w[k]);
+            }
+            neighbour.add(v);
+        }
+        return neighbour;
+    }
 
-                sphere.set(kk, vec);
-                delta = delta + (Vector.norm(dVec) / sphere.size());
+    /*
+    * nPoint orientations spread over the unit sphere: the fixed table for 120
+    * points, a Fibonacci sphere otherwise. Each count is calculated once per
+    * process; the returned list and vectors are copies the caller may change.
+    */
+    public static List<Double[]> calcSphere(int nPoint) {
 
-            }
-        } 
+        List<Double[]> sphere = sphereCache.computeIfAbsent(nPoint,
+                (n) -> (n == 120) ? Vector.getSphere120() : Vector.calcFibonacciSphere(n));
 
-        return sphere;
+        List<Double[]> copy = new ArrayList<>(sphere.size());
+        for (Double[] v : sphere) {
+            copy.add(v.clone());
+        }
+        return copy;
     }
 
 }
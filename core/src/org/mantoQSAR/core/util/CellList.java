@@ -0,0 +1,371 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.Arrays;
+import java.util.List;
+import org.mantoQSAR.core.math.PointSet;
+
+/*
+* uniform grid (cell list) over a fixed reference point set. Points are sorted
+* by cell, so a nearest point query only visits the cells in growing shells
+* around the query until no closer point can be found.
+*/
+public class CellList {
+
+    private final int nPoint;
+    private final double[] coord;   // interleaved x, y, z sorted by cell
+    private final int[] index;      // original index of sorted points
+    private final int[] cellStart;  // first sorted point of each cell, length nCell + 1
+
+    private final double[] min = new double[3];
+    private final int[] nCell = new int[3];
+    private final double cellSize;
+
+    public CellList(List<Double[]> points) {
+        this(toArray(points), 0.0);
+    }
+
+    public CellList(PointSet points) {
+        this(points.toInterleaved(), 0.0);
+    }
+
+    public CellList(double[] xyz) {
+        this(xyz, 0.0);
+    }
+
+    /*
+    * xyz holds interleaved coordinates; a cell size <= 0 selects the size from
+    * the extent of the point set
+    */
+    public CellList(double[] xyz, double cellSize) {
+
+        this.nPoint = xyz.length / 3;
+
+        double[] max = new double[3];
+        for (int k = 0; k < 3; k++) {
+            min[k] = Double.POSITIVE_INFINITY;
+            max[k] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < nPoint; i++) {
+            for (int k = 0; k < 3; k++) {
+                double c = xyz[3 * i + k];
+                if (c < min[k]) {
+                    min[k] = c;
+                }
+                if (c > max[k]) {
+                    max[k] = c;
+                }
+            }
+        }
+
+        if (nPoint == 0) {
+            for (int k = 0; k < 3; k++) {
+                min[k] = 0.0;
+                max[k] = 0.0;
+            }
+        }
+
+        if (cellSize <= 0.0) {
+            cellSize = CellList.estimateCellSize(min, max, nPoint);
+        }
+        this.cellSize = cellSize;
+
+        int total = 1;
+        for (int k = 0; k < 3; k++) {
+            nCell[k] = (int) Math.floor((max[k] - min[k]) / cellSize) + 1;
+            total = total * nCell[k];
+        }
+
+        // counting sort of points into cells
+        int[] cellOf = new int[nPoint];
+        this.cellStart = new int[total + 1];
+        for (int i = 0; i < nPoint; i++) {
+            int c = this.cellIndex(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+            cellOf[i] = c;
+            cellStart[c + 1]++;
+        }
+        for (int c = 0; c < total; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int[] fill = new int[total];
+        this.coord = new double[3 * nPoint];
+        this.index = new int[nPoint];
+        for (int i = 0; i < nPoint; i++) {
+            int c = cellOf[i];
+            int pos = cellStart[c] + fill[c];
+            fill[c]++;
+            coord[3 * pos] = xyz[3 * i];
+            coord[3 * pos + 1] = xyz[3 * i + 1];
+            coord[3 * pos + 2] = xyz[3 * i + 2];
+            index[pos] = i;
+        }
+    }
+
+    private static double estimateCellSize(double[] min, double[] max, int n) {
+
+        // aim at about two points per occupied cell, ignoring flat dimensions
+        double volume = 1.0;
+        int dim = 0;
+        double maxExtent = 0.0;
+        for (int k = 0; k < 3; k++) {
+            double e = max[k] - min[k];
+            maxExtent = Math.max(maxExtent, e);
+            if (e > 1e-6) {
+                volume = volume * e;
+                dim++;
+            }
+        }
+
+        if (dim == 0 || n < 2) {
+            return 1.0;
+        }
+
+        double size = Math.pow(2.0 * volume / n, 1.0 / dim);
+
+        // limit number of cells for degenerated point distributions
+        double minSize = maxExtent / 1024.0;
+        return Math.max(size, Math.max(minSize, 1e-3));
+    }
+
+    private static double[] toArray(List<Double[]> points) {
+
+        double[] xyz = new double[3 * points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            Double[] p = points.get(i);
+            xyz[3 * i] = p[0];
+            xyz[3 * i + 1] = p[1];
+            xyz[3 * i + 2] = p[2];
+        }
+        return xyz;
+    }
+
+    private int cellCoord(double c, int k) {
+        int i = (int) Math.floor((c - min[k]) / cellSize);
+        if (i < 0) {
+            return 0;
+        }
+        if (i >= nCell[k]) {
+            return nCell[k] - 1;
+        }
+        return i;
+    }
+
+    private int cellIndex(double x, double y, double z) {
+        return (this.cellCoord(z, 2) * nCell[1] + this.cellCoord(y, 1)) * nCell[0] + this.cellCoord(x, 0);
+    }
+
+    public int size() {
+        return nPoint;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public double nearestDistance(double x, double y, double z) {
+
+        if (nPoint == 0) {
+            return Double.NaN;
+        }
+        return Math.sqrt(this.search(x, y, z, null));
+    }
+
+    /*
+    * original indices of all points closer than radius to (x, y, z)
+    */
+    public int[] within(double x, double y, double z, double radius) {
+
+        int[] found = new int[16];
+        int n = 0;
+        double r2 = radius * radius;
+
+        int x0 = this.cellCoord(x - radius, 0);
+        int x1 = this.cellCoord(x + radius, 0);
+        int y0 = this.cellCoord(y - radius, 1);
+        int y1 = this.cellCoord(y + radius, 1);
+        int z0 = this.cellCoord(z - radius, 2);
+        int z1 = this.cellCoord(z + radius, 2);
+
+        for (int iz = z0; iz <= z1; iz++) {
+            for (int iy = y0; iy <= y1; iy++) {
+                int row = (iz * nCell[1] + iy) * nCell[0];
+                for (int ix = x0; ix <= x1; ix++) {
+                    int cell = row + ix;
+                    for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                        double dx = coord[3 * p] - x;
+                        double dy = coord[3 * p + 1] - y;
+                        double dz = coord[3 * p + 2] - z;
+                        if (dx * dx + dy * dy + dz * dz < r2) {
+                            if (n == found.length) {
+                                found = Arrays.copyOf(found, 2 * n);
+                            }
+                            found[n] = index[p];
+                            n++;
+                        }
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    public interface NeighbourVisitor {
+        void visit(int index, double distance2);
+    }
+
+    /*
+    * calls visitor with original index and squared distance of all points
+    * closer than radius to (x, y, z), without collecting them first
+    */
+    public void forEachWithin(double x, double y, double z, double radius, NeighbourVisitor visitor) {
+
+        double r2 = radius * radius;
+
+        int x0 = this.cellCoord(x - radius, 0);
+        int x1 = this.cellCoord(x + radius, 0);
+        int y0 = this.cellCoord(y - radius, 1);
+        int y1 = this.cellCoord(y + radius, 1);
+        int z0 = this.cellCoord(z - radius, 2);
+        int z1 = this.cellCoord(z + radius, 2);
+
+        for (int iz = z0; iz <= z1; iz++) {
+            for (int iy = y0; iy <= y1; iy++) {
+                int row = (iz * nCell[1] + iy) * nCell[0];
+                // points of a cell row are contiguous
+                for (int p = cellStart[row + x0]; p < cellStart[row + x1 + 1]; p++) {
+                    double dx = coord[3 * p] - x;
+                    double dy = coord[3 * p + 1] - y;
+                    double dz = coord[3 * p + 2] - z;
+                    double d2 = dx * dx + dy * dy + dz * dz;
+                    if (d2 < r2) {
+                        visitor.visit(index[p], d2);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+    * returns the original index of the point closest to (x, y, z), -1 for an empty set
+    */
+    public int nearestIndex(double x, double y, double z) {
+
+        if (nPoint == 0) {
+            return -1;
+        }
+        int[] found = new int[1];
+        this.search(x, y, z, found);
+        return found[0];
+    }
+
+    private double search(double x, double y, double z, int[] found) {
+
+        double[] q = new double[]{x, y, z};
+        int[] c = new int[3];
+        double[] excess = new double[3];  // distance of query outside grid bounds
+        double excess2 = 0.0;
+
+        for (int k = 0; k < 3; k++) {
+            c[k] = this.cellCoord(q[k], k);
+            double lo = min[k];
+            double hi = min[k] + nCell[k] * cellSize;
+            if (q[k] < lo) {
+                excess[k] = lo - q[k];
+            } else if (q[k] > hi) {
+                excess[k] = q[k] - hi;
+            }
+            excess2 += excess[k] * excess[k];
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int bestIndex = -1;
+
+        for (int r = 0; ; r++) {
+
+            // lower bound of distance to any point in shell r
+            double bound = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < 3; k++) {
+                if (c[k] - r < 0 && c[k] + r >= nCell[k]) {
+                    continue;
+                }
+                double d;
+                if (excess[k] > 0.0) {
+                    d = excess[k] + r * cellSize;
+                } else {
+                    d = Math.max(0.0, (r - 1) * cellSize);
+                }
+                double b = excess2 - excess[k] * excess[k] + d * d;
+                if (b < bound) {
+                    bound = b;
+                }
+            }
+
+            if (bound == Double.POSITIVE_INFINITY || bound >= best) {
+                break;
+            }
+
+            int z0 = Math.max(0, c[2] - r);
+            int z1 = Math.min(nCell[2] - 1, c[2] + r);
+            int y0 = Math.max(0, c[1] - r);
+            int y1 = Math.min(nCell[1] - 1, c[1] + r);
+            int x0 = Math.max(0, c[0] - r);
+            int x1 = Math.min(nCell[0] - 1, c[0] + r);
+
+            for (int iz = z0; iz <= z1; iz++) {
+                boolean zEdge = Math.abs(iz - c[2]) == r;
+                for (int iy = y0; iy <= y1; iy++) {
+                    boolean yEdge = zEdge || Math.abs(iy - c[1]) == r;
+                    int row = (iz * nCell[1] + iy) * nCell[0];
+
+                    for (int ix = x0; ix <= x1; ix++) {
+
+                        // only cells on the surface of the shell
+                        if (!yEdge && Math.abs(ix - c[0]) != r) {
+                            ix = (ix < c[0] + r) ? c[0] + r - 1 : ix;
+                            continue;
+                        }
+
+                        int cell = row + ix;
+                        for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                            double dx = coord[3 * p] - x;
+                            double dy = coord[3 * p + 1] - y;
+                            double dz = coord[3 * p + 2] - z;
+                            double d2 = dx * dx + dy * dy + dz * dz;
+                            if (d2 < best) {
+                                best = d2;
+                                bestIndex = index[p];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (found != null) {
+            found[0] = bestIndex;
+        }
+        return best;
+    }
+}
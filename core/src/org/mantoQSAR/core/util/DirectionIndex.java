@@ -0,0 +1,193 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.util;
+
+import java.util.function.IntConsumer;
+import org.mantoQSAR.core.math.PointSet;
+
+/*
+* points bucketed by their direction from a center. The buckets are cells of
+* about equal area on the sphere: bands of equal polar angle, each divided into
+* sectors of azimuth. Each bucket keeps the angular radius of its points around
+* the cell center and their radial extent. A query for points whose projection onto
+* a direction reaches a threshold only visits the buckets that can hold such
+* points.
+*/
+public class DirectionIndex {
+
+    private final double[] center;
+    private final int nBand;
+    private final int[] bandStart;      // first bucket of each band, length nBand + 1
+    private final int nBucket;
+    private final double[] direction;   // interleaved unit bucket directions
+    private final double[] angle;       // largest angle between bucket direction and its points
+    private final double[] rMin;
+    private final double[] rMax;
+    private final int[] bucketStart;    // first sorted point of each bucket, length nBucket + 1
+    private final int[] index;          // original index of sorted points
+
+    public DirectionIndex(PointSet points, double[] center) {
+        this(points, center, Math.max(12, Math.min(512, points.size() / 64)));
+    }
+
+    /*
+    * about nBucket buckets, the actual count is given by getBucketCount
+    */
+    public DirectionIndex(PointSet points, double[] center, int nBucket) {
+
+        this.center = center.clone();
+
+        // bands of the angular cell size, sectors per band by circumference
+        double cellSize = Math.sqrt(4.0 * Math.PI / Math.max(1, nBucket));
+        this.nBand = Math.max(1, (int) Math.round(Math.PI / cellSize));
+        this.bandStart = new int[nBand + 1];
+        for (int k = 0; k < nBand; k++) {
+            double theta = Math.PI * (k + 0.5) / nBand;
+            int nSector = Math.max(1, (int) Math.round(2.0 * Math.PI * Math.sin(theta) / (Math.PI / nBand)));
+            bandStart[k + 1] = bandStart[k] + nSector;
+        }
+        this.nBucket = bandStart[nBand];
+
+        this.direction = new double[3 * this.nBucket];
+        for (int k = 0; k < nBand; k++) {
+            double theta = Math.PI * (k + 0.5) / nBand;
+            int nSector = bandStart[k + 1] - bandStart[k];
+            for (int j = 0; j < nSector; j++) {
+                double phi = -Math.PI + 2.0 * Math.PI * (j + 0.5) / nSector;
+                int b = bandStart[k] + j;
+                direction[3 * b] = Math.sin(theta) * Math.cos(phi);
+                direction[3 * b + 1] = Math.sin(theta) * Math.sin(phi);
+                direction[3 * b + 2] = Math.cos(theta);
+            }
+        }
+
+        int n = points.size();
+        int[] bucket = new int[n];
+        double[] r = new double[n];
+        double[] cos = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            double dx = points.getX(i) - center[0];
+            double dy = points.getY(i) - center[1];
+            double dz = points.getZ(i) - center[2];
+            r[i] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            // points at the center have no direction, any bucket holds them
+            if (r[i] > 0.0) {
+                int b = this.getBucket(dx / r[i], dy / r[i], dz / r[i]);
+                bucket[i] = b;
+                cos[i] = (dx * direction[3 * b] + dy * direction[3 * b + 1] + dz * direction[3 * b + 2]) / r[i];
+            } else {
+                bucket[i] = 0;
+                cos[i] = 1.0;
+            }
+        }
+
+        this.angle = new double[this.nBucket];
+        this.rMin = new double[this.nBucket];
+        this.rMax = new double[this.nBucket];
+        double[] cosMin = new double[this.nBucket];
+        for (int b = 0; b < this.nBucket; b++) {
+            cosMin[b] = 1.0;
+            rMin[b] = Double.POSITIVE_INFINITY;
+            rMax[b] = Double.NEGATIVE_INFINITY;
+        }
+
+        this.bucketStart = new int[this.nBucket + 1];
+        for (int i = 0; i < n; i++) {
+            int b = bucket[i];
+            bucketStart[b + 1]++;
+            cosMin[b] = Math.min(cosMin[b], cos[i]);
+            rMin[b] = Math.min(rMin[b], r[i]);
+            rMax[b] = Math.max(rMax[b], r[i]);
+        }
+        for (int b = 0; b < this.nBucket; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+            // margin for round off of the angle
+            angle[b] = Math.acos(Math.max(-1.0, Math.min(1.0, cosMin[b]))) + 1e-9;
+        }
+
+        this.index = new int[n];
+        int[] fill = new int[this.nBucket];
+        for (int i = 0; i < n; i++) {
+            int b = bucket[i];
+            index[bucketStart[b] + fill[b]] = i;
+            fill[b]++;
+        }
+    }
+
+    /*
+    * bucket of the unit direction (x, y, z)
+    */
+    private int getBucket(double x, double y, double z) {
+
+        double theta = Math.acos(Math.max(-1.0, Math.min(1.0, z)));
+        int k = Math.min(nBand - 1, (int) (theta / Math.PI * nBand));
+
+        int nSector = bandStart[k + 1] - bandStart[k];
+        double phi = Math.atan2(y, x) + Math.PI;
+        int j = Math.min(nSector - 1, (int) (phi / (2.0 * Math.PI) * nSector));
+
+        return bandStart[k] + j;
+    }
+
+    /*
+    * passes the index of every point that may have a projection
+    * (p - center) . normal of at least minProjection to visitor. normal is a
+    * unit vector; the caller tests the candidates.
+    */
+    public void forEachCandidate(double[] normal, double minProjection, IntConsumer visitor) {
+
+        for (int b = 0; b < nBucket; b++) {
+            if (bucketStart[b] == bucketStart[b + 1]) {
+                continue;
+            }
+
+            double c = direction[3 * b] * normal[0] + direction[3 * b + 1] * normal[1] + direction[3 * b + 2] * normal[2];
+            double theta = Math.acos(Math.max(-1.0, Math.min(1.0, c)));
+
+            // largest cosine between normal and a point direction of the bucket
+            double cosMax = Math.cos(Math.max(0.0, theta - angle[b]));
+            double bound = (cosMax >= 0.0) ? rMax[b] * cosMax : rMin[b] * cosMax;
+
+            if (bound >= minProjection) {
+                for (int j = bucketStart[b]; j < bucketStart[b + 1]; j++) {
+                    visitor.accept(index[j]);
+                }
+            }
+        }
+    }
+
+    public double[] getCenter() {
+        return center.clone();
+    }
+
+    public int getBucketCount() {
+        return nBucket;
+    }
+
+    public int size() {
+        return index.length;
+    }
+}
@@ -0,0 +1,278 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.Structure;
+import org.mantoQSAR.core.math.PointSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* solvent accessible surface as Shrake-Rupley dot surface. Each atom sphere,
+* extended by the probe radius, is covered with evenly spaced dots; dots inside
+* the extended sphere of any neighbouring atom are removed.
+* Resolution is given in dots per Angstrom, as for the Jmol isosurface.
+*/
+public class DotSurface {
+
+    private static final Logger logger = LoggerFactory.getLogger(DotSurface.class);
+
+    // the only surface type built, named as for the Jmol isosurface
+    public static final String SAS = "sasurface";
+
+    private static final double DEFAULT_RADIUS = 1.8;
+    private static final int MIN_DOTS = 12;
+
+    private static final Map<Integer, double[]> sphereCache = new ConcurrentHashMap<>();
+
+    Double resolution;
+    Double sizeOfSphere;
+    String typeOfSurface;
+
+    public DotSurface() {
+        this.resolution = 0.5;
+        this.sizeOfSphere = 1.4;
+        this.typeOfSurface = SAS;
+    }
+
+    public PointSet getSurface(Structure struct) {
+
+        if (struct == null) {
+            logger.error("No structure provided for surface calculation.");
+            return new PointSet(0);
+        }
+
+        List<Atom> atomList = new ArrayList<>();
+        for (Chain c : struct.getModel(0)) {
+            for (Group g : c.getAtomGroups()) {
+                // ignore solvent
+                if (g.isWater()) {
+                    continue;
+                }
+                atomList.addAll(g.getAtoms());
+            }
+        }
+
+        PointSet atoms = MoleculeTools.getAtomPosition(atomList);
+        double[] radius = new double[atomList.size()];
+        for (int i = 0; i < radius.length; i++) {
+            radius[i] = DotSurface.getRadius(atomList.get(i));
+        }
+
+        return this.getSurface(atoms, radius);
+    }
+
+    public static double getRadius(Atom a) {
+
+        double r = 0.0;
+        if (a.getElement() != null) {
+            r = a.getElement().getVDWRadius();
+        }
+        if (!(r > 0.0)) {
+            r = DEFAULT_RADIUS;
+        }
+        return r;
+    }
+
+    /*
+    * dot surface for atom centers and van der Waals radii
+    */
+    public PointSet getSurface(PointSet atoms, double[] radius) {
+
+        int nAtom = atoms.size();
+        if (nAtom == 0) {
+            return new PointSet(0);
+        }
+
+        final double probe = sizeOfSphere;
+        final double[] ext = new double[nAtom];
+        double maxExt = 0.0;
+        for (int i = 0; i < nAtom; i++) {
+            ext[i] = radius[i] + probe;
+            maxExt = Math.max(maxExt, ext[i]);
+        }
+
+        final double[] ax = atoms.getX();
+        final double[] ay = atoms.getY();
+        final double[] az = atoms.getZ();
+        final CellList cellList = new CellList(atoms.toInterleaved(), 2.0 * maxExt);
+        final double searchRadius = 2.0 * maxExt;
+
+        // dots per atom, kept in atom order for a reproducible point order
+        double[][] atomDots = new double[nAtom][];
+
+        IntStream.range(0, nAtom).parallel().forEach((i) -> {
+
+            int[] candidate = cellList.within(ax[i], ay[i], az[i], searchRadius);
+
+            // keep overlapping neighbours only
+            int nNb = 0;
+            for (int c : candidate) {
+                if (c == i) {
+                    continue;
+                }
+                double dx = ax[c] - ax[i];
+                double dy = ay[c] - ay[i];
+                double dz = az[c] - az[i];
+                double r = ext[i] + ext[c];
+                if (dx * dx + dy * dy + dz * dz < r * r) {
+                    candidate[nNb] = c;
+                    nNb++;
+                }
+            }
+
+            double[] sphere = DotSurface.getUnitSphere(this.dotCount(ext[i]));
+            int nDot = sphere.length / 3;
+            double[] dots = new double[3 * nDot];
+            int nFree = 0;
+            int last = 0;   // neighbour that buried the previous dot is tested first
+
+            for (int d = 0; d < nDot; d++) {
+                double px = ax[i] + ext[i] * sphere[3 * d];
+                double py = ay[i] + ext[i] * sphere[3 * d + 1];
+                double pz = az[i] + ext[i] * sphere[3 * d + 2];
+
+                boolean buried = false;
+                for (int k = 0; k < nNb; k++) {
+                    int j = candidate[(k + last) % nNb];
+                    double dx = px - ax[j];
+                    double dy = py - ay[j];
+                    double dz = pz - az[j];
+                    if (dx * dx + dy * dy + dz * dz < ext[j] * ext[j]) {
+                        buried = true;
+                        last = (k + last) % nNb;
+                        break;
+                    }
+                }
+
+                if (!buried) {
+                    dots[3 * nFree] = px;
+                    dots[3 * nFree + 1] = py;
+                    dots[3 * nFree + 2] = pz;
+                    nFree++;
+                }
+            }
+
+            double[] free = new double[3 * nFree];
+            System.arraycopy(dots, 0, free, 0, free.length);
+            atomDots[i] = free;
+        });
+
+        int total = 0;
+        for (double[] d : atomDots) {
+            total += d.length / 3;
+        }
+
+        PointSet surface = new PointSet(total);
+        int n = 0;
+        for (double[] d : atomDots) {
+            for (int k = 0; k < d.length / 3; k++) {
+                surface.set(n, d[3 * k], d[3 * k + 1], d[3 * k + 2]);
+                n++;
+            }
+        }
+
+        logger.info("dot surface with " + total + " points for " + nAtom + " atoms");
+        return surface;
+    }
+
+    private int dotCount(double extRadius) {
+        // dot density of resolution^2 per square Angstrom
+        double area = 4.0 * Math.PI * extRadius * extRadius;
+        return Math.max(MIN_DOTS, (int) Math.round(area * resolution * resolution));
+    }
+
+    /*
+    * evenly distributed points on the unit sphere (golden section spiral),
+    * interleaved x, y, z
+    */
+    public static double[] getUnitSphere(int n) {
+
+        return sphereCache.computeIfAbsent(n, (k) -> {
+
+            double[] p = new double[3 * k];
+            double inc = Math.PI * (3.0 - Math.sqrt(5.0));
+            double off = 2.0 / k;
+
+            for (int i = 0; i < k; i++) {
+                double y = i * off - 1.0 + (off / 2.0);
+                double r = Math.sqrt(1.0 - y * y);
+                double phi = i * inc;
+                p[3 * i] = Math.cos(phi) * r;
+                p[3 * i + 1] = y;
+                p[3 * i + 2] = Math.sin(phi) * r;
+            }
+            return p;
+        });
+    }
+
+    public Double getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(Double resolution) {
+        this.resolution = resolution;
+    }
+
+    public Double getSizeOfSphere() {
+        return sizeOfSphere;
+    }
+
+    public void setSizeOfSphere(Double sizeOfSphere) {
+        this.sizeOfSphere = sizeOfSphere;
+    }
+
+    public String getTypeOfSurface() {
+        return typeOfSurface;
+    }
+
+    /*
+    * only the solvent accessible surface is supported, other types are rejected
+    */
+    public void setTypeOfSurface(String typeOfSurface) {
+
+        if (!DotSurface.isSupported(typeOfSurface)) {
+            throw new IllegalArgumentException("Surface type " + typeOfSurface + " not supported, only " + SAS
+                    + " surfaces are calculated.");
+        }
+        this.typeOfSurface = SAS;
+    }
+
+    /*
+    * true for the solvent accessible surface and for settings that do not
+    * name a surface type
+    */
+    public static boolean isSupported(String typeOfSurface) {
+
+        return typeOfSurface == null || typeOfSurface.isEmpty() || typeOfSurface.equalsIgnoreCase("unknown")
+                || typeOfSurface.equalsIgnoreCase(SAS) || typeOfSurface.equalsIgnoreCase("sas");
+    }
+}
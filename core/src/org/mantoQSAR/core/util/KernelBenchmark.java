@@ -0,0 +1,94 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.mantoQSAR.core.math.PointSet;
+
+/*
+* run time of the direct and the blocked evaluation for each numbered map
+* function, single threaded on a synthetic system:
+* java org.mantoQSAR.core.util.KernelBenchmark [atoms] [surface points] [repeats]
+*/
+public class KernelBenchmark {
+
+    public static List<String> compare(PointSet target, PointSet source, double dC, double iS, int repeat) {
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%d sources, %d targets, %s %s, best of %d",
+                source.size(), target.size(), System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), repeat));
+
+        double[] sx = source.getX();
+        double[] sy = source.getY();
+        double[] sz = source.getZ();
+        double[] value = source.getValue();
+        double[] tx = target.getX();
+        double[] ty = target.getY();
+        double[] tz = target.getZ();
+
+        for (int type = 0; MapFunctions.getName(type) != null; type++) {
+
+            MapFunction f = MapFunctions.get(MapFunctions.getName(type), dC, iS);
+            double[] direct = new double[target.size()];
+            double[] blocked = new double[target.size()];
+
+            long tDirect = Long.MAX_VALUE;
+            long tBlocked = Long.MAX_VALUE;
+
+            // first runs include compilation
+            for (int i = 0; i < repeat + 2; i++) {
+                long t0 = System.nanoTime();
+                f.evaluate(sx, sy, sz, value, tx, ty, tz, 0.0, direct);
+                long t1 = System.nanoTime();
+                MapFunctions.evaluateBlocked(f, sx, sy, sz, value, tx, ty, tz, 0.0, blocked);
+                long t2 = System.nanoTime();
+
+                if (i >= 2) {
+                    tDirect = Math.min(tDirect, t1 - t0);
+                    tBlocked = Math.min(tBlocked, t2 - t1);
+                }
+            }
+
+            ProjectionError err = ProjectionError.compare(direct, blocked);
+            report.add(String.format("  %-16s direct %8.1f ms, blocked %8.1f ms, speedup %5.2f, rel. max deviation %.1e",
+                    MapFunctions.getName(type), tDirect * 1e-6, tBlocked * 1e-6,
+                    (double) tDirect / tBlocked, err.getRelativeMaxError()));
+        }
+        return report;
+    }
+
+    public static void main(String[] args) {
+
+        int nAtom = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        int nSurface = (args.length > 1) ? Integer.parseInt(args[1]) : 5000;
+        int repeat = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+        PointSet[] system = ProjectionAccuracy.getSyntheticSystem(nAtom, nSurface, 1L);
+
+        for (String line : KernelBenchmark.compare(system[0], system[1], 78.0, 150.0, repeat)) {
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+/*
+* distance kernel used to map source values onto target points:
+* out[j] = sum over k of value[k] * kernel(max(|s_k - t_j|, minDistance)).
+* Implementations hold their medium parameters and are created per projection
+* by a Factory, see MapFunctions for the registered kernels.
+*/
+public interface MapFunction {
+
+    /*
+    * contribution of a unit source value at distance r in Angstrom
+    */
+    double kernel(double r);
+
+    /*
+    * projection of all sources onto all targets, written to out
+    */
+    void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                  double[] tx, double[] ty, double[] tz,
+                  double minDistance, double[] out);
+
+    /*
+    * replaces the squared distances r2[0] to r2[n - 1] by their kernel values,
+    * used by the blocked evaluation in MapFunctions
+    */
+    default void kernelOfSquare(double[] r2, int n) {
+        for (int k = 0; k < n; k++) {
+            r2[k] = this.kernel(Math.sqrt(r2[k]));
+        }
+    }
+
+    /*
+    * radius beyond which contributions are smaller than tolerance relative to
+    * the unscreened kernel, infinite if the kernel is not screened
+    */
+    default double getCutoffRadius(double tolerance) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /*
+    * p if the kernel is getFactor() / r^p with p 1 or 2 and can be evaluated
+    * by a multipole tree, 0 otherwise
+    */
+    default int getPower() {
+        return 0;
+    }
+
+    default double getFactor() {
+        return 1.0;
+    }
+
+    public interface Factory {
+
+        /*
+        * kernel for a medium with dielectric constant dC and ionic strength iS in mM
+        */
+        MapFunction create(double dC, double iS);
+    }
+}
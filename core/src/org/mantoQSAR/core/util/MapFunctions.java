@@ -0,0 +1,615 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* registry of map functions by name. The numbered map functions of the
+* descriptor settings are registered as
+*
+*   0 inverse          q / r
+*   1 decay-half       q * 10^(-r / 2)
+*   2 inverse-shifted  q / (1 + r)
+*   3 decay            q * 10^(-r)
+*   4 inverse-sixth    q / r^6
+*   5 inverse-square   q / (4 pi dC r^2)
+*   6 screened         q / (dC r) * 10^(-r / lD) * 1000, r and lD in nm
+*   7 screened-square  q / (4 pi dC r^2) * 10^(-r / lD) * 1000, lD in nm taken as Angstrom
+*
+* with the Debye length lD = 0.304 / sqrt(iS / 1000). Further kernels are
+* added by register, or named in the settings by the class name of a
+* MapFunction.Factory with a public no argument constructor.
+*/
+public final class MapFunctions {
+
+    private static final Logger logger = LoggerFactory.getLogger(MapFunctions.class);
+
+    private static final double LN10 = Math.log(10.0);
+
+    // sources per block of the blocked evaluation
+    private static final int BLOCK = 256;
+
+    private static final String[] CODE = new String[]{
+        "inverse", "decay-half", "inverse-shifted", "decay",
+        "inverse-sixth", "inverse-square", "screened", "screened-square"};
+
+    private static final Map<String, MapFunction.Factory> registry = new ConcurrentHashMap<>();
+
+    static {
+        registry.put(CODE[0], (dC, iS) -> new Inverse());
+        registry.put(CODE[1], (dC, iS) -> new Decay(0.5));
+        registry.put(CODE[2], (dC, iS) -> new InverseShifted());
+        registry.put(CODE[3], (dC, iS) -> new Decay(1.0));
+        registry.put(CODE[4], (dC, iS) -> new InverseSixth());
+        registry.put(CODE[5], (dC, iS) -> new InverseSquare(dC));
+        registry.put(CODE[6], (dC, iS) -> new Screened(dC, iS));
+        registry.put(CODE[7], (dC, iS) -> new ScreenedSquare(dC, iS));
+    }
+
+    private MapFunctions() {
+    }
+
+    public static void register(String name, MapFunction.Factory factory) {
+        registry.put(name, factory);
+    }
+
+    /*
+    * name of a numbered map function, null if the number is not defined
+    */
+    public static String getName(int code) {
+        if (code < 0 || code >= CODE.length) {
+            return null;
+        }
+        return CODE[code];
+    }
+
+    public static boolean isRegistered(String name) {
+        return name != null && MapFunctions.getFactory(name) != null;
+    }
+
+    /*
+    * kernel registered under name for the given medium, null if unknown
+    */
+    public static MapFunction get(String name, double dC, double iS) {
+
+        MapFunction.Factory factory = MapFunctions.getFactory(name);
+        if (factory == null) {
+            logger.error("Map function " + name + " not identified.");
+            return null;
+        }
+        return factory.create(dC, iS);
+    }
+
+    private static MapFunction.Factory getFactory(String name) {
+
+        if (name == null) {
+            return null;
+        }
+
+        MapFunction.Factory factory = registry.get(name);
+        if (factory != null || !name.contains(".")) {
+            return factory;
+        }
+
+        // kernels named by class
+        try {
+            Object o = Class.forName(name).getDeclaredConstructor().newInstance();
+            if (o instanceof MapFunction.Factory) {
+                factory = (MapFunction.Factory) o;
+                registry.putIfAbsent(name, factory);
+                logger.info("Map function " + name + " registered.");
+                return factory;
+            }
+            logger.error("Class " + name + " is not a map function factory.");
+        } catch (ReflectiveOperationException ex) {
+            logger.error("Map function " + name + " could not be loaded. " + ex.getMessage());
+        }
+        return null;
+    }
+
+    /*
+    * projection of all sources onto all targets in blocks of sources. Squared
+    * distances and kernel values of a block are computed in separate loops
+    * over short arrays without dependencies between elements, which the JIT
+    * can compile to SIMD instructions, and summed with four partial sums.
+    * Gives the same values as f.evaluate up to round off.
+    */
+    public static void evaluateBlocked(MapFunction f, double[] sx, double[] sy, double[] sz, double[] value,
+                                       double[] tx, double[] ty, double[] tz,
+                                       double minDistance, double[] out) {
+
+        double[] r2 = new double[BLOCK];
+        double min2 = minDistance * minDistance;
+        int nS = value.length;
+
+        for (int j = 0; j < out.length; j++) {
+            double x = tx[j];
+            double y = ty[j];
+            double z = tz[j];
+            double s0 = 0.0;
+            double s1 = 0.0;
+            double s2 = 0.0;
+            double s3 = 0.0;
+
+            for (int from = 0; from < nS; from += BLOCK) {
+                int n = Math.min(BLOCK, nS - from);
+
+                for (int k = 0; k < n; k++) {
+                    double dx = sx[from + k] - x;
+                    double dy = sy[from + k] - y;
+                    double dz = sz[from + k] - z;
+                    r2[k] = dx * dx + dy * dy + dz * dz;
+                }
+
+                // kept out of the loop above, a clamp there prevents vectorization
+                if (min2 > 0.0) {
+                    for (int k = 0; k < n; k++) {
+                        if (r2[k] < min2) {
+                            r2[k] = min2;
+                        }
+                    }
+                }
+
+                f.kernelOfSquare(r2, n);
+
+                int k = 0;
+                for (; k + 3 < n; k += 4) {
+                    s0 = s0 + value[from + k] * r2[k];
+                    s1 = s1 + value[from + k + 1] * r2[k + 1];
+                    s2 = s2 + value[from + k + 2] * r2[k + 2];
+                    s3 = s3 + value[from + k + 3] * r2[k + 3];
+                }
+                for (; k < n; k++) {
+                    s0 = s0 + value[from + k] * r2[k];
+                }
+            }
+            out[j] = (s0 + s1) + (s2 + s3);
+        }
+    }
+
+    /*
+    * projections of several value vectors at the same source points, value[m]
+    * mapped with f[m] into out[m]. Squared distances are computed once per
+    * pair and shared by all requests; consecutive requests with the same
+    * kernel instance also share the kernel values.
+    */
+    public static void evaluateFused(MapFunction[] f, double[] sx, double[] sy, double[] sz, double[][] value,
+                                     double[] tx, double[] ty, double[] tz,
+                                     double minDistance, double[][] out) {
+
+        int nM = f.length;
+        double[] r2 = new double[BLOCK];
+        double[] w = new double[BLOCK];
+        double[] s = new double[4 * nM];
+        double min2 = minDistance * minDistance;
+        int nS = sx.length;
+
+        for (int j = 0; j < tx.length; j++) {
+            double x = tx[j];
+            double y = ty[j];
+            double z = tz[j];
+            Arrays.fill(s, 0.0);
+
+            for (int from = 0; from < nS; from += BLOCK) {
+                int n = Math.min(BLOCK, nS - from);
+
+                for (int k = 0; k < n; k++) {
+                    double dx = sx[from + k] - x;
+                    double dy = sy[from + k] - y;
+                    double dz = sz[from + k] - z;
+                    r2[k] = dx * dx + dy * dy + dz * dz;
+                }
+
+                if (min2 > 0.0) {
+                    for (int k = 0; k < n; k++) {
+                        if (r2[k] < min2) {
+                            r2[k] = min2;
+                        }
+                    }
+                }
+
+                for (int m = 0; m < nM; m++) {
+
+                    if (m == 0 || f[m] != f[m - 1]) {
+                        System.arraycopy(r2, 0, w, 0, n);
+                        f[m].kernelOfSquare(w, n);
+                    }
+
+                    double[] v = value[m];
+                    double s0 = 0.0;
+                    double s1 = 0.0;
+                    double s2 = 0.0;
+                    double s3 = 0.0;
+                    int k = 0;
+                    for (; k + 3 < n; k += 4) {
+                        s0 = s0 + v[from + k] * w[k];
+                        s1 = s1 + v[from + k + 1] * w[k + 1];
+                        s2 = s2 + v[from + k + 2] * w[k + 2];
+                        s3 = s3 + v[from + k + 3] * w[k + 3];
+                    }
+                    for (; k < n; k++) {
+                        s0 = s0 + v[from + k] * w[k];
+                    }
+                    s[4 * m] += s0;
+                    s[4 * m + 1] += s1;
+                    s[4 * m + 2] += s2;
+                    s[4 * m + 3] += s3;
+                }
+            }
+
+            for (int m = 0; m < nM; m++) {
+                out[m][j] = (s[4 * m] + s[4 * m + 1]) + (s[4 * m + 2] + s[4 * m + 3]);
+            }
+        }
+    }
+
+    /*
+    * Debye screening length in nm for monovalent ions, ionic strength in mM
+    */
+    public static double getDebyeLength(double iS) {
+        return 0.304 / Math.sqrt(iS / 1000);
+    }
+
+    public static final class Inverse implements MapFunction {
+
+        @Override
+        public double kernel(double r) {
+            return 1 / r;
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            for (int k = 0; k < n; k++) {
+                r2[k] = 1 / Math.sqrt(r2[k]);
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double c = Math.max(Math.sqrt(dx * dx + dy * dy + dz * dz), minDistance);
+                    v = v + value[k] / c;
+                }
+                out[j] = v;
+            }
+        }
+
+        @Override
+        public int getPower() {
+            return 1;
+        }
+    }
+
+    /*
+    * q * 10^(-r * rate)
+    */
+    public static final class Decay implements MapFunction {
+
+        private final double rate;
+
+        public Decay(double rate) {
+            this.rate = rate * LN10;
+        }
+
+        @Override
+        public double kernel(double r) {
+            return Math.exp(-r * rate);
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            double a = rate;
+            for (int k = 0; k < n; k++) {
+                r2[k] = Math.exp(-Math.sqrt(r2[k]) * a);
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            double a = rate;
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double c = Math.max(Math.sqrt(dx * dx + dy * dy + dz * dz), minDistance);
+                    v = v + value[k] * Math.exp(-c * a);
+                }
+                out[j] = v;
+            }
+        }
+    }
+
+    public static final class InverseShifted implements MapFunction {
+
+        @Override
+        public double kernel(double r) {
+            return 1 / (1 + r);
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            for (int k = 0; k < n; k++) {
+                r2[k] = 1 / (1 + Math.sqrt(r2[k]));
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double c = Math.max(Math.sqrt(dx * dx + dy * dy + dz * dz), minDistance);
+                    v = v + value[k] / (1 + c);
+                }
+                out[j] = v;
+            }
+        }
+    }
+
+    public static final class InverseSixth implements MapFunction {
+
+        @Override
+        public double kernel(double r) {
+            double r2 = r * r;
+            return 1 / (r2 * r2 * r2);
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            for (int k = 0; k < n; k++) {
+                double d2 = r2[k];
+                r2[k] = 1 / (d2 * d2 * d2);
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            double min2 = minDistance * minDistance;
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double d2 = Math.max(dx * dx + dy * dy + dz * dz, min2);
+                    v = v + value[k] / (d2 * d2 * d2);
+                }
+                out[j] = v;
+            }
+        }
+    }
+
+    public static final class InverseSquare implements MapFunction {
+
+        private final double w;
+
+        public InverseSquare(double dC) {
+            this.w = 1 / (4 * Math.PI * dC);
+        }
+
+        @Override
+        public double kernel(double r) {
+            return w / (r * r);
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            double f = w;
+            for (int k = 0; k < n; k++) {
+                r2[k] = f / r2[k];
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            double min2 = minDistance * minDistance;
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double d2 = Math.max(dx * dx + dy * dy + dz * dz, min2);
+                    v = v + value[k] / d2;
+                }
+                out[j] = w * v;
+            }
+        }
+
+        @Override
+        public int getPower() {
+            return 2;
+        }
+
+        @Override
+        public double getFactor() {
+            return w;
+        }
+    }
+
+    /*
+    * screened Coulomb potential, distances converted to nm
+    */
+    public static final class Screened implements MapFunction {
+
+        private final double dC;
+        private final double rate;
+
+        public Screened(double dC, double iS) {
+            this.dC = dC;
+            this.rate = 0.1 * LN10 / MapFunctions.getDebyeLength(iS);
+        }
+
+        @Override
+        public double kernel(double r) {
+            return (1 / (dC * (r * 0.1))) * Math.exp(-r * rate) * 1000;
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            double a = rate;
+            double f = 1000 / (dC * 0.1);
+            for (int k = 0; k < n; k++) {
+                double c = Math.sqrt(r2[k]);
+                r2[k] = f / c * Math.exp(-c * a);
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            double a = rate;
+            double f = 1000 / (dC * 0.1);
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double c = Math.max(Math.sqrt(dx * dx + dy * dy + dz * dz), minDistance);
+                    v = v + value[k] / c * Math.exp(-c * a);
+                }
+                out[j] = f * v;
+            }
+        }
+
+        @Override
+        public double getCutoffRadius(double tolerance) {
+            return MapFunctions.getCutoffRadius(tolerance, LN10 / rate);
+        }
+    }
+
+    public static final class ScreenedSquare implements MapFunction {
+
+        private final double w;
+        private final double rate;
+
+        public ScreenedSquare(double dC, double iS) {
+            this.w = 1 / (4 * Math.PI * dC);
+            this.rate = LN10 / MapFunctions.getDebyeLength(iS);
+        }
+
+        @Override
+        public double kernel(double r) {
+            return w / (r * r) * Math.exp(-r * rate) * 1000;
+        }
+
+        @Override
+        public void kernelOfSquare(double[] r2, int n) {
+            double a = rate;
+            double f = w * 1000;
+            for (int k = 0; k < n; k++) {
+                r2[k] = f / r2[k] * Math.exp(-Math.sqrt(r2[k]) * a);
+            }
+        }
+
+        @Override
+        public void evaluate(double[] sx, double[] sy, double[] sz, double[] value,
+                             double[] tx, double[] ty, double[] tz,
+                             double minDistance, double[] out) {
+
+            double a = rate;
+            double f = w * 1000;
+            for (int j = 0; j < out.length; j++) {
+                double x = tx[j];
+                double y = ty[j];
+                double z = tz[j];
+                double v = 0.0;
+                for (int k = 0; k < value.length; k++) {
+                    double dx = sx[k] - x;
+                    double dy = sy[k] - y;
+                    double dz = sz[k] - z;
+                    double c = Math.max(Math.sqrt(dx * dx + dy * dy + dz * dz), minDistance);
+                    v = v + value[k] / (c * c) * Math.exp(-c * a);
+                }
+                out[j] = f * v;
+            }
+        }
+
+        @Override
+        public double getCutoffRadius(double tolerance) {
+            return MapFunctions.getCutoffRadius(tolerance, LN10 / rate);
+        }
+    }
+
+    /*
+    * distance at which 10^(-r / length) drops below tolerance
+    */
+    private static double getCutoffRadius(double tolerance, double length) {
+
+        if (!(tolerance > 0.0 && tolerance < 1.0) || !(length > 0.0) || Double.isInfinite(length)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -Math.log10(tolerance) * length;
+    }
+}
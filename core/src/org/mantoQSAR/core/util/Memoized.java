@@ -0,0 +1,135 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/*
+* value calculated once on first use. Concurrent callers wait for the running
+* calculation instead of starting their own. invalidate() drops the value and
+* increments the version, callers already holding the old value keep it.
+* A failed calculation is not stored and is run again by the next caller.
+*/
+public class Memoized<T> {
+
+    private final Supplier<T> supplier;
+    private final AtomicReference<State<T>> state = new AtomicReference<>(new State<>(0L, null));
+
+    private static class State<T> {
+
+        final long version;
+        final FutureTask<T> task;
+
+        State(long version, FutureTask<T> task) {
+            this.version = version;
+            this.task = task;
+        }
+    }
+
+    public Memoized(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    public T get() {
+
+        while (true) {
+            State<T> s = state.get();
+            FutureTask<T> task = s.task;
+
+            if (task == null) {
+                FutureTask<T> created = new FutureTask<>(supplier::get);
+                if (!state.compareAndSet(s, new State<>(s.version, created))) {
+                    continue;
+                }
+                task = created;
+                // the calculation runs in the thread of the first caller
+                task.run();
+            }
+
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for calculation.", e);
+            } catch (CancellationException e) {
+                this.reset(task);
+            } catch (ExecutionException e) {
+                this.reset(task);
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /*
+    * removes a failed calculation, unless the value was invalidated meanwhile
+    */
+    private void reset(FutureTask<T> task) {
+
+        State<T> s = state.get();
+        if (s.task == task) {
+            state.compareAndSet(s, new State<>(s.version, null));
+        }
+    }
+
+    /*
+    * drops the value, returns the new version
+    */
+    public long invalidate() {
+
+        while (true) {
+            State<T> s = state.get();
+            if (state.compareAndSet(s, new State<>(s.version + 1, null))) {
+                return s.version + 1;
+            }
+        }
+    }
+
+    /*
+    * incremented on every invalidation, results derived from the value can
+    * store the version to detect that they are outdated
+    */
+    public long getVersion() {
+        return state.get().version;
+    }
+
+    /*
+    * true if the value is calculated and can be read without waiting
+    */
+    public boolean isDone() {
+
+        FutureTask<T> task = state.get().task;
+        return task != null && task.isDone() && !task.isCancelled();
+    }
+}
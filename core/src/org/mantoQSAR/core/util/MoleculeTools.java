@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Group;
+import org.mantoQSAR.core.math.PointSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -170,17 +171,13 @@ public abstract class MoleculeTools {
         return hydConst;
     }
     
-    public static List<Double[]> getAtomPosition(List<Atom> aList) {
+    public static PointSet getAtomPosition(List<Atom> aList) {
 
-        List<Double[]> atomPos = new ArrayList<>(aList.size());
+        PointSet atomPos = new PointSet(aList.size());
 
-        for (Atom a : aList) {
-            double[] aP = a.getCoords();
-            Double[] aP1 = new Double[3];
-            for (int i = 0; i < aP.length; i++) {
-                aP1[i] = (Double) aP[i];
-            }
-            atomPos.add(aP1);
+        for (int i = 0; i < aList.size(); i++) {
+            double[] aP = aList.get(i).getCoords();
+            atomPos.set(i, aP[0], aP[1], aP[2]);
         }
         return atomPos;
     }
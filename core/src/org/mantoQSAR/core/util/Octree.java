@@ -0,0 +1,293 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.Arrays;
+import org.mantoQSAR.core.math.PointSet;
+
+/*
+* Barnes-Hut tree over valued source points for the unscreened kernels
+* sum(q / r) and sum(q / r^2). Each cell stores the total value (monopole), the
+* first moment (dipole) and the second moment about its geometric center; a
+* cell is used as a whole if its radius seen from the target is smaller than
+* the opening angle theta, otherwise its children (or, for leaves, its points)
+* are visited.
+* theta = 0 gives the direct sum.
+*/
+public class Octree {
+
+    private static final int LEAF_SIZE = 8;
+    private static final int MAX_DEPTH = 32;
+
+    private final double[] sx;
+    private final double[] sy;
+    private final double[] sz;
+    private final double[] value;
+    private final int[] order;     // source indices sorted by node
+
+    private int nNode = 0;
+    private int[] start;
+    private int[] end;
+    private int[] firstChild;      // -1 for leaves
+    private int[] nChild;
+    private double[] cx;
+    private double[] cy;
+    private double[] cz;
+    private double[] radius;
+    private double[] q;            // monopole
+    private double[] px;           // dipole about (cx, cy, cz)
+    private double[] py;
+    private double[] pz;
+    private double[] m;            // second moment xx, yy, zz, xy, xz, yz
+
+    public Octree(PointSet source) {
+
+        this.sx = source.getX();
+        this.sy = source.getY();
+        this.sz = source.getZ();
+        this.value = source.getValue();
+
+        int n = source.size();
+        this.order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        int capacity = Math.max(16, 4 * n / LEAF_SIZE);
+        start = new int[capacity];
+        end = new int[capacity];
+        firstChild = new int[capacity];
+        nChild = new int[capacity];
+        cx = new double[capacity];
+        cy = new double[capacity];
+        cz = new double[capacity];
+        radius = new double[capacity];
+        q = new double[capacity];
+        px = new double[capacity];
+        py = new double[capacity];
+        pz = new double[capacity];
+        m = new double[6 * capacity];
+
+        if (n > 0) {
+            this.build(this.newNode(0, n), 0);
+        }
+    }
+
+    private int newNode(int from, int to) {
+
+        if (nNode == start.length) {
+            int c = 2 * nNode;
+            start = Arrays.copyOf(start, c);
+            end = Arrays.copyOf(end, c);
+            firstChild = Arrays.copyOf(firstChild, c);
+            nChild = Arrays.copyOf(nChild, c);
+            cx = Arrays.copyOf(cx, c);
+            cy = Arrays.copyOf(cy, c);
+            cz = Arrays.copyOf(cz, c);
+            radius = Arrays.copyOf(radius, c);
+            q = Arrays.copyOf(q, c);
+            px = Arrays.copyOf(px, c);
+            py = Arrays.copyOf(py, c);
+            pz = Arrays.copyOf(pz, c);
+            m = Arrays.copyOf(m, 6 * c);
+        }
+        start[nNode] = from;
+        end[nNode] = to;
+        firstChild[nNode] = -1;
+        nChild[nNode] = 0;
+        return nNode++;
+    }
+
+    private void build(int node, int depth) {
+
+        int from = start[node];
+        int to = end[node];
+
+        // bounding box center as expansion center
+        double[] min = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from; i < to; i++) {
+            int k = order[i];
+            min[0] = Math.min(min[0], sx[k]);
+            min[1] = Math.min(min[1], sy[k]);
+            min[2] = Math.min(min[2], sz[k]);
+            max[0] = Math.max(max[0], sx[k]);
+            max[1] = Math.max(max[1], sy[k]);
+            max[2] = Math.max(max[2], sz[k]);
+        }
+        double mx = 0.5 * (min[0] + max[0]);
+        double my = 0.5 * (min[1] + max[1]);
+        double mz = 0.5 * (min[2] + max[2]);
+
+        double sq = 0.0;
+        double sdx = 0.0;
+        double sdy = 0.0;
+        double sdz = 0.0;
+        double r2 = 0.0;
+        double[] sm = new double[6];
+        for (int i = from; i < to; i++) {
+            int k = order[i];
+            double dx = sx[k] - mx;
+            double dy = sy[k] - my;
+            double dz = sz[k] - mz;
+            sq = sq + value[k];
+            sdx = sdx + value[k] * dx;
+            sdy = sdy + value[k] * dy;
+            sdz = sdz + value[k] * dz;
+            sm[0] = sm[0] + value[k] * dx * dx;
+            sm[1] = sm[1] + value[k] * dy * dy;
+            sm[2] = sm[2] + value[k] * dz * dz;
+            sm[3] = sm[3] + value[k] * dx * dy;
+            sm[4] = sm[4] + value[k] * dx * dz;
+            sm[5] = sm[5] + value[k] * dy * dz;
+            r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+        }
+        System.arraycopy(sm, 0, m, 6 * node, 6);
+        cx[node] = mx;
+        cy[node] = my;
+        cz[node] = mz;
+        radius[node] = Math.sqrt(r2);
+        q[node] = sq;
+        px[node] = sdx;
+        py[node] = sdy;
+        pz[node] = sdz;
+
+        if (to - from <= LEAF_SIZE || depth >= MAX_DEPTH || r2 == 0.0) {
+            return;
+        }
+
+        // sort points of this node into octants
+        int[] count = new int[8];
+        int[] octant = new int[to - from];
+        for (int i = from; i < to; i++) {
+            int k = order[i];
+            int o = (sx[k] > mx ? 1 : 0) | (sy[k] > my ? 2 : 0) | (sz[k] > mz ? 4 : 0);
+            octant[i - from] = o;
+            count[o]++;
+        }
+
+        int[] offset = new int[8];
+        for (int o = 1; o < 8; o++) {
+            offset[o] = offset[o - 1] + count[o - 1];
+        }
+        int[] sorted = new int[to - from];
+        int[] fill = offset.clone();
+        for (int i = from; i < to; i++) {
+            int o = octant[i - from];
+            sorted[fill[o]] = order[i];
+            fill[o]++;
+        }
+        System.arraycopy(sorted, 0, order, from, to - from);
+
+        // children are created consecutively
+        int first = nNode;
+        int n = 0;
+        for (int o = 0; o < 8; o++) {
+            if (count[o] > 0) {
+                this.newNode(from + offset[o], from + offset[o] + count[o]);
+                n++;
+            }
+        }
+        firstChild[node] = first;
+        nChild[node] = n;
+
+        for (int c = first; c < first + n; c++) {
+            this.build(c, depth + 1);
+        }
+    }
+
+    /*
+    * sum of value / max(r, minDistance)^power for power 1 or 2
+    */
+    public double evaluate(double tx, double ty, double tz, int power, double theta, double minDistance) {
+
+        if (nNode == 0) {
+            return 0.0;
+        }
+
+        double theta2 = theta * theta;
+        int[] stack = new int[8 * MAX_DEPTH + 8];
+        int top = 0;
+        stack[top++] = 0;
+        double v = 0.0;
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            double dx = tx - cx[node];
+            double dy = ty - cy[node];
+            double dz = tz - cz[node];
+            double d2 = dx * dx + dy * dy + dz * dz;
+            double r = radius[node];
+
+            // far cells: no point of the cell closer than minDistance
+            if (r * r < theta2 * d2 && Math.sqrt(d2) - r > minDistance) {
+                double dp = px[node] * dx + py[node] * dy + pz[node] * dz;
+                
+                // second order terms of the expansion in the source offset
+                int o = 6 * node;
+                double dMd = m[o] * dx * dx + m[o + 1] * dy * dy + m[o + 2] * dz * dz 
+                        + 2.0 * (m[o + 3] * dx * dy + m[o + 4] * dx * dz + m[o + 5] * dy * dz);
+                double trM = m[o] + m[o + 1] + m[o + 2];
+                
+                if (power == 1) {
+                    double d = Math.sqrt(d2);
+                    double d3 = d2 * d;
+                    v = v + q[node] / d + dp / d3 + (3.0 * dMd - trM * d2) / (2.0 * d3 * d2);
+                } else {
+                    double d4 = d2 * d2;
+                    v = v + q[node] / d2 + 2.0 * dp / d4 + (4.0 * dMd - trM * d2) / (d4 * d2);
+                }
+                continue;
+            }
+
+            if (firstChild[node] < 0) {
+                for (int i = start[node]; i < end[node]; i++) {
+                    int k = order[i];
+                    double ex = sx[k] - tx;
+                    double ey = sy[k] - ty;
+                    double ez = sz[k] - tz;
+                    double c = Math.sqrt(ex * ex + ey * ey + ez * ez);
+                    if (c < minDistance) {
+                        c = minDistance;
+                    }
+                    if (power == 1) {
+                        v = v + (value[k] * (1 / c));
+                    } else {
+                        v = v + (value[k] * (1 / (c * c)));
+                    }
+                }
+                continue;
+            }
+
+            for (int c = firstChild[node]; c < firstChild[node] + nChild[node]; c++) {
+                stack[top++] = c;
+            }
+        }
+        return v;
+    }
+
+    public int getNodeCount() {
+        return nNode;
+    }
+}
@@ -0,0 +1,327 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.stream.IntStream;
+import org.mantoQSAR.core.math.PointSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* projection of source values evaluated once on a regular 3D grid. Point sets
+* are sampled by trilinear interpolation of the eight surrounding grid nodes,
+* points outside of the grid are evaluated directly.
+* Node (i, j, k) is origin + spacing * (i, j, k) and has index (i * ny + j) * nz + k.
+* A shell grid only evaluates the nodes between two radii around a center,
+* points next to nodes outside of the shell are evaluated directly as well.
+*/
+public class PotentialGrid {
+
+    private static final Logger logger = LoggerFactory.getLogger(PotentialGrid.class);
+
+    // upper limit of grid nodes, the spacing is increased for larger grids
+    public static final int MAX_NODE = 8 * 1024 * 1024;
+
+    private final PointSet source;
+    private final Projection projection;
+    private final String mapFunction;
+    private final double minDistance;
+    private final double dielectricConstant;
+    private final double ionicStrength;
+
+    private final double spacing;
+    private final double[] origin = new double[3];
+    private final int nx;
+    private final int ny;
+    private final int nz;
+    private final double[] value;
+
+    // nodes evaluated, null for all nodes of the box
+    private final double[] shellCenter;
+    private final double shellMin;
+    private final double shellMax;
+
+    /*
+    * grid with the given spacing covering the box min to max
+    */
+    public PotentialGrid(PointSet source, Projection projection, String mapFunction, double minDistance,
+                         double dC, double iS, double spacing, double[] min, double[] max) {
+        this(source, projection, mapFunction, minDistance, dC, iS, spacing, min, max, null, 0.0, 0.0);
+    }
+
+    private PotentialGrid(PointSet source, Projection projection, String mapFunction, double minDistance,
+                          double dC, double iS, double spacing, double[] min, double[] max,
+                          double[] shellCenter, double shellMin, double shellMax) {
+
+        if (!(spacing > 0.0)) {
+            throw new IllegalArgumentException("Grid spacing has to be positive.");
+        }
+
+        this.source = source;
+        this.projection = projection;
+        this.mapFunction = mapFunction;
+        this.minDistance = minDistance;
+        this.dielectricConstant = dC;
+        this.ionicStrength = iS;
+
+        double h = spacing;
+        while (PotentialGrid.getNodeCount(min, max, h) > MAX_NODE) {
+            h = h * 1.25;
+        }
+        if (h != spacing) {
+            logger.warn("Grid spacing increased from " + spacing + " to " + h + " to limit grid size.");
+        }
+        this.spacing = h;
+
+        // nodes of cells reaching into the shell are evaluated as well
+        this.shellCenter = shellCenter;
+        this.shellMin = Math.max(0.0, shellMin - h * Math.sqrt(3.0));
+        this.shellMax = shellMax + h * Math.sqrt(3.0);
+
+        System.arraycopy(min, 0, origin, 0, 3);
+        this.nx = PotentialGrid.getCount(min[0], max[0], h);
+        this.ny = PotentialGrid.getCount(min[1], max[1], h);
+        this.nz = PotentialGrid.getCount(min[2], max[2], h);
+
+        this.value = this.calcNodeValue();
+    }
+
+    /*
+    * grid covering the bounding box of points extended by margin
+    */
+    public static PotentialGrid around(PointSet points, double margin, PointSet source, Projection projection,
+                                       String mapFunction, double minDistance, double dC, double iS, double spacing) {
+
+        double[] min = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+        for (int i = 0; i < points.size(); i++) {
+            double[] p = new double[]{points.getX(i), points.getY(i), points.getZ(i)};
+            for (int k = 0; k < 3; k++) {
+                min[k] = Math.min(min[k], p[k] - margin);
+                max[k] = Math.max(max[k], p[k] + margin);
+            }
+        }
+        return new PotentialGrid(source, projection, mapFunction, minDistance, dC, iS, spacing, min, max);
+    }
+
+    /*
+    * grid evaluated only between radius rMin and rMax around center
+    */
+    public static PotentialGrid shell(double[] center, double rMin, double rMax, PointSet source, Projection projection,
+                                      String mapFunction, double minDistance, double dC, double iS, double spacing) {
+
+        double r = rMax + spacing;
+        double[] min = new double[]{center[0] - r, center[1] - r, center[2] - r};
+        double[] max = new double[]{center[0] + r, center[1] + r, center[2] + r};
+        return new PotentialGrid(source, projection, mapFunction, minDistance, dC, iS, spacing, min, max,
+                center.clone(), rMin, rMax);
+    }
+
+    /*
+    * approximate number of nodes evaluated by a shell grid
+    */
+    public static double getShellNodeCount(double rMin, double rMax, double spacing) {
+
+        double rIn = Math.max(0.0, rMin - spacing * Math.sqrt(3.0));
+        double rOut = rMax + spacing * Math.sqrt(3.0);
+        return 4.0 / 3.0 * Math.PI * (rOut * rOut * rOut - rIn * rIn * rIn) / (spacing * spacing * spacing);
+    }
+
+    private static int getCount(double min, double max, double h) {
+        return Math.max(2, (int) Math.ceil((max - min) / h) + 1);
+    }
+
+    private static long getNodeCount(double[] min, double[] max, double h) {
+        return (long) getCount(min[0], max[0], h) * getCount(min[1], max[1], h) * getCount(min[2], max[2], h);
+    }
+
+    /*
+    * projection onto all nodes, evaluated in parallel in blocks of nodes
+    */
+    private double[] calcNodeValue() {
+
+        int n = nx * ny * nz;
+        double[] v = new double[n];
+
+        int nBlock = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+        int blockSize = (n + nBlock - 1) / nBlock;
+
+        long t0 = System.currentTimeMillis();
+
+        IntStream.range(0, nBlock).parallel().forEach((b) -> {
+
+            int from = b * blockSize;
+            int to = Math.min(n, from + blockSize);
+            if (from >= to) {
+                return;
+            }
+
+            int[] active = new int[to - from];
+            int nActive = 0;
+            for (int index = from; index < to; index++) {
+                if (this.isEvaluated(index)) {
+                    active[nActive] = index;
+                    nActive++;
+                } else {
+                    v[index] = Double.NaN;
+                }
+            }
+
+            PointSet node = new PointSet(nActive);
+            for (int a = 0; a < nActive; a++) {
+                int index = active[a];
+                int k = index % nz;
+                int j = (index / nz) % ny;
+                int i = index / (nz * ny);
+                node.set(a, origin[0] + i * spacing, origin[1] + j * spacing, origin[2] + k * spacing);
+            }
+
+            double[] blockValue = new Projection(projection).calcProjection(node, source, mapFunction, minDistance,
+                    dielectricConstant, ionicStrength);
+            for (int a = 0; a < nActive; a++) {
+                v[active[a]] = blockValue[a];
+            }
+        });
+
+        logger.info("potential grid with " + nx + " x " + ny + " x " + nz + " nodes"
+                + ((shellCenter == null) ? "" : " (shell " + shellMin + " - " + shellMax + ")")
+                + " calculated in " + (System.currentTimeMillis() - t0) + " ms");
+        return v;
+    }
+
+    private boolean isEvaluated(int index) {
+
+        if (shellCenter == null) {
+            return true;
+        }
+
+        int k = index % nz;
+        int j = (index / nz) % ny;
+        int i = index / (nz * ny);
+        double dx = origin[0] + i * spacing - shellCenter[0];
+        double dy = origin[1] + j * spacing - shellCenter[1];
+        double dz = origin[2] + k * spacing - shellCenter[2];
+        double d2 = dx * dx + dy * dy + dz * dz;
+        return d2 >= shellMin * shellMin && d2 <= shellMax * shellMax;
+    }
+
+    public boolean contains(double x, double y, double z) {
+
+        double fx = (x - origin[0]) / spacing;
+        double fy = (y - origin[1]) / spacing;
+        double fz = (z - origin[2]) / spacing;
+
+        return fx >= 0.0 && fx <= nx - 1
+            && fy >= 0.0 && fy <= ny - 1
+            && fz >= 0.0 && fz <= nz - 1;
+    }
+
+    /*
+    * trilinear interpolation, the point has to be inside of the grid
+    */
+    public double interpolate(double x, double y, double z) {
+
+        double fx = (x - origin[0]) / spacing;
+        double fy = (y - origin[1]) / spacing;
+        double fz = (z - origin[2]) / spacing;
+
+        int i = Math.min(Math.max((int) fx, 0), nx - 2);
+        int j = Math.min(Math.max((int) fy, 0), ny - 2);
+        int k = Math.min(Math.max((int) fz, 0), nz - 2);
+
+        double tx = fx - i;
+        double ty = fy - j;
+        double tz = fz - k;
+
+        int i00 = (i * ny + j) * nz + k;
+        int i01 = i00 + nz;
+        int i10 = i00 + ny * nz;
+        int i11 = i10 + nz;
+
+        double c00 = value[i00] + tz * (value[i00 + 1] - value[i00]);
+        double c01 = value[i01] + tz * (value[i01 + 1] - value[i01]);
+        double c10 = value[i10] + tz * (value[i10 + 1] - value[i10]);
+        double c11 = value[i11] + tz * (value[i11 + 1] - value[i11]);
+
+        double c0 = c00 + ty * (c01 - c00);
+        double c1 = c10 + ty * (c11 - c10);
+
+        return c0 + tx * (c1 - c0);
+    }
+
+    /*
+    * projected values at the target points
+    */
+    public double[] sample(PointSet target) {
+
+        double[] v = new double[target.size()];
+        boolean[] outside = new boolean[target.size()];
+        int nOutside = 0;
+
+        for (int i = 0; i < target.size(); i++) {
+            double x = target.getX(i);
+            double y = target.getY(i);
+            double z = target.getZ(i);
+
+            v[i] = this.contains(x, y, z) ? this.interpolate(x, y, z) : Double.NaN;
+
+            // outside of the grid, or next to a node outside of the shell
+            if (Double.isNaN(v[i])) {
+                outside[i] = true;
+                nOutside++;
+            }
+        }
+
+        if (nOutside > 0) {
+            logger.debug(nOutside + " points outside of potential grid evaluated directly");
+
+            double[] direct = new Projection(projection).calcProjection(target.subset(outside), source, mapFunction,
+                    minDistance, dielectricConstant, ionicStrength);
+            int n = 0;
+            for (int i = 0; i < outside.length; i++) {
+                if (outside[i]) {
+                    v[i] = direct[n];
+                    n++;
+                }
+            }
+        }
+        return v;
+    }
+
+    public double getSpacing() {
+        return spacing;
+    }
+
+    public double[] getOrigin() {
+        return origin.clone();
+    }
+
+    public int[] getSize() {
+        return new int[]{nx, ny, nz};
+    }
+
+    public int getNodeCount() {
+        return value.length;
+    }
+}
@@ -22,11 +22,8 @@ along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
 
 package org.mantoQSAR.core.util;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import org.mantoQSAR.core.math.Vector;
+import java.util.stream.IntStream;
+import org.mantoQSAR.core.math.PointSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,160 +31,291 @@ import org.slf4j.LoggerFactory;
 public class Projection {
 
     private static final Logger logger = LoggerFactory.getLogger(Projection.class); 
+    
+    public static final double DEFAULT_DIELECTRIC_CONSTANT = 2.0;
+    public static final double DEFAULT_IONIC_STRENGTH = 50.0;
+    
+    public static final String BACKEND_DIRECT = "direct";
+    public static final String BACKEND_TREE = "tree";
+    public static final String BACKEND_BLOCKED = "blocked";
+    
     Double ionicStrength; 
     Double dielectricConstant; 
     
+    // relative size of neglected screened contributions, 0 for the exact sum
+    double tolerance = 0.0; 
+    
+    // evaluation of the sum: direct, blocked for SIMD or Barnes-Hut tree (map functions 0 and 5)
+    String backend = BACKEND_DIRECT; 
+    double theta = 0.3; 
+    
     public Projection(){
 
     }
     
+    public Projection(double tolerance){
+        this.tolerance = tolerance; 
+    }
+    
+    /*
+    * projection with the evaluation mode of p
+    */
+    public Projection(Projection p){
+        this.tolerance = p.tolerance; 
+        this.backend = p.backend; 
+        this.theta = p.theta; 
+    }
    
-    public List<Double> calcProjection(List<Double[]> targetP, List<Double[]> sourceP, List<Double> value, int type, Double minDistance){
+    public double[] calcProjection(PointSet target, PointSet source, int type, double minDistance){
         
-        Projection p = new Projection(); 
-        return p.calcProjection(targetP, sourceP, value, type, minDistance, 2.0, 50.0); 
+        return this.calcProjection(target, source, type, minDistance, DEFAULT_DIELECTRIC_CONSTANT, DEFAULT_IONIC_STRENGTH); 
     }
     
-    public List<Double> calcProjection(List<Double[]> targetP, 
-                                              List<Double[]> sourceP, 
-                                              List<Double> value, 
-                                              int type, 
-                                              Double minDistance, 
-                                              Double dC, 
-                                              Double iS) {
+    public double[] calcProjection(PointSet target, 
+                                   PointSet source, 
+                                   int type, 
+                                   double minDistance, 
+                                   double dC, 
+                                   double iS) {
+        
+        String name = MapFunctions.getName(type); 
+        if (name == null) {
+            logger.error("Map function " + type + " not defined.");
+            return new double[target.size()]; 
+        }
+        return this.calcProjection(target, source, name, minDistance, dC, iS); 
+    }
+    
+    public double[] calcProjection(PointSet target, 
+                                   PointSet source, 
+                                   String mapFunction, 
+                                   double minDistance, 
+                                   double dC, 
+                                   double iS) {
 
         this.ionicStrength = iS; 
         this.dielectricConstant = dC; 
         
-        Double[] dist = new Double[3];
-        List<Double> distM = new ArrayList<>();
-        List<Double> mapValue = new ArrayList<>();
+        MapFunction f = MapFunctions.get(mapFunction, dC, iS); 
+        if (f == null) {
+            return new double[target.size()]; 
+        }
+        return this.calcProjection(target, source, f, minDistance); 
+    }
+    
+    /*
+    * maps the values of the source points onto the target points
+    */
+    public double[] calcProjection(PointSet target, PointSet source, MapFunction f, double minDistance) {
         
-        if(targetP.isEmpty()){
+        if(target.isEmpty()){
             logger.error("Empty target list in Projection.calcProjection.");
             return null; 
         }
         
-        if(sourceP.isEmpty()){
+        if(source.isEmpty()){
             logger.error("Empty source list in Projection.calcProjection.");
             return null; 
         }
 
-        if (value.size() < sourceP.size()) {
+        if (!source.hasValue()) {
             logger.error("Each source point should have a value. \n " + 
-                    "sourceP " + sourceP.size() + 
-                    "; valueP " + value.size());
-            return mapValue;
+                    "sourceP " + source.size() + "; valueP 0");
+            return new double[0];
         }
         
-        for (int j = 0; j < targetP.size(); j++) {
-          
-            distM.clear();
-            for (int k = 0; k < sourceP.size(); k++) {
-
-                Double b = 0.0;
-                for (int i = 0; i < dist.length; i++) {
-                    Double a = (sourceP.get(k)[i] - targetP.get(j)[i]);
-                    dist[i] = Math.pow(a, 2);
-                    b = b + Math.pow(a, 2);
-                }
-                Double c = Math.sqrt(b);
+        double[] mapValue = new double[target.size()];
+        
+        if (BACKEND_TREE.equals(backend) && f.getPower() > 0) {
+            this.calcTree(target, source, f, minDistance, mapValue);
+            return mapValue; 
+        }
+        
+        // cutoff only pays off if it excludes source points
+        double cutoff = f.getCutoffRadius(tolerance); 
+        if (cutoff < Projection.getDiagonal(target, source)) {
+            this.calcCutoff(target, source, f, minDistance, cutoff, mapValue);
+            return mapValue; 
+        }
+        
+        if (BACKEND_BLOCKED.equals(backend)) {
+            MapFunctions.evaluateBlocked(f, source.getX(), source.getY(), source.getZ(), source.getValue(), 
+                                         target.getX(), target.getY(), target.getZ(), 
+                                         minDistance, mapValue);
+            return mapValue; 
+        }
+        
+        f.evaluate(source.getX(), source.getY(), source.getZ(), source.getValue(), 
+                   target.getX(), target.getY(), target.getZ(), 
+                   minDistance, mapValue);
+        return mapValue;
+    }
 
-                if (c < minDistance) {
-                    c = minDistance;
+    /*
+    * projections of several value vectors at the positions of source onto
+    * target, value[m] mapped with f[m]. All pairs are evaluated directly with
+    * distances computed once for all requests; the backend settings are not
+    * used.
+    */
+    public double[][] calcProjection(PointSet target, PointSet source, double[][] value, MapFunction[] f, 
+                                     double minDistance) {
+        
+        if (value.length != f.length) {
+            throw new IllegalArgumentException("Each value vector needs a map function.");
+        }
+        
+        double[][] mapValue = new double[f.length][target.size()];
+        if (target.isEmpty() || source.isEmpty() || f.length == 0) {
+            return mapValue; 
+        }
+        
+        MapFunctions.evaluateFused(f, source.getX(), source.getY(), source.getZ(), value, 
+                                   target.getX(), target.getY(), target.getZ(), 
+                                   minDistance, mapValue);
+        return mapValue; 
+    }
+    
+    /*
+    * true if f is evaluated by a plain sum over all pairs in this mode, so it
+    * can take part in a fused projection without changing its result
+    */
+    public boolean isDirect(MapFunction f) {
+        
+        if (BACKEND_TREE.equals(backend) && f.getPower() > 0) {
+            return false; 
+        }
+        return Double.isInfinite(f.getCutoffRadius(tolerance)); 
+    }
+    
+    /*
+    * radius in Angstrom beyond which the screening factor of map function 6 or 7
+    * drops below tolerance; infinite for other map functions or no tolerance
+    */
+    public static double getCutoffRadius(int type, double iS, double tolerance) {
+        
+        String name = MapFunctions.getName(type); 
+        if (name == null) {
+            return Double.POSITIVE_INFINITY; 
+        }
+        return MapFunctions.get(name, DEFAULT_DIELECTRIC_CONSTANT, iS).getCutoffRadius(tolerance); 
+    }
+    
+    private static double getDiagonal(PointSet a, PointSet b) {
+        
+        double[] min = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        
+        for (PointSet ps : new PointSet[]{a, b}) {
+            for (int i = 0; i < ps.size(); i++) {
+                double[] p = new double[]{ps.getX(i), ps.getY(i), ps.getZ(i)};
+                for (int k = 0; k < 3; k++) {
+                    min[k] = Math.min(min[k], p[k]);
+                    max[k] = Math.max(max[k], p[k]);
                 }
+            }
+        }
+        
+        double d = 0.0; 
+        for (int k = 0; k < 3; k++) {
+            d = d + (max[k] - min[k]) * (max[k] - min[k]);
+        }
+        return Math.sqrt(d);
+    }
+    
+    /*
+    * screened map functions summed over source points within the cutoff only,
+    * sources are looked up in a cell list
+    */
+    private void calcCutoff(PointSet target, PointSet source, MapFunction f, double minDistance, 
+                            double cutoff, double[] mapValue) {
+        
+        double[] value = source.getValue();
+        CellList cellList = new CellList(source.toInterleaved(), 0.5 * cutoff);
+        
+        // accumulated value of the current target point
+        double[] v = new double[1];
+        
+        CellList.NeighbourVisitor visitor = (k, d2) -> {
+            v[0] = v[0] + value[k] * f.kernel(Math.max(Math.sqrt(d2), minDistance));
+        };
+        
+        for (int j = 0; j < mapValue.length; j++) {
+            v[0] = 0.0; 
+            cellList.forEachWithin(target.getX(j), target.getY(j), target.getZ(j), cutoff, visitor);
+            mapValue[j] = v[0]; 
+        }
+    }
+    
+    /*
+    * kernels factor / r or factor / r^2 from a Barnes-Hut tree
+    */
+    private void calcTree(PointSet target, PointSet source, MapFunction f, double minDistance, 
+                          double[] mapValue) {
+        
+        Octree tree = new Octree(source); 
+        int power = f.getPower(); 
+        double factor = f.getFactor(); 
+        
+        IntStream.range(0, mapValue.length).parallel().forEach((j) -> {
+            mapValue[j] = factor * tree.evaluate(target.getX(j), target.getY(j), target.getZ(j), 
+                                                 power, theta, minDistance);
+        });
+    }
+    
+    /*
+    * identifies the evaluation mode for caching of projections
+    */
+    public String getModeKey() {
+        return tolerance + "|" + backend + "|" + theta; 
+    }
+    
+    public String getBackend() {
+        return backend;
+    }
 
-                distM.add(c);
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
 
-            }
+    public double getTheta() {
+        return theta;
+    }
 
-            // functions here 
-            Double db = 0.304 / Math.sqrt(ionicStrength/1000); // debye screening length for monovalent ions
-            Double v = 0.0;
-            
-            switch (type) {
-                case 0:
-
-                    for (int kk = 0; kk < distM.size(); kk++) {
-
-                        v = v + (value.get(kk) * (1 / distM.get(kk)));
-                    }
-                    break;
-
-                case 1:
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + (value.get(kk) * Math.pow(10, (-distM.get(kk) / 2)));
-                    }
-                    break;
-
-                case 2:
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + (value.get(kk) * (1 / (1 + distM.get(kk))));
-                    }
-                    break;
-
-                case 3:
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + (value.get(kk) * Math.pow(10, (-distM.get(kk))));
-                    }
-                    break;
-
-                case 4:
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + (value.get(kk) * (1 / Math.pow(distM.get(kk), 6)));
-                    }
-                    break;
-
-                case 5:
-
-                    Double w = 1 / (4 * Math.PI * dielectricConstant);
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + (w * value.get(kk) * (1 / Math.pow(distM.get(kk), 2)));
-                    }
-                    break;
-
-                case 6:
-
-                    // distance given in Angstrom needs to be nm
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + ((value.get(kk)/ (dielectricConstant * (distM.get(kk)*0.1))) * Math.pow(10,((distM.get(kk)*-0.1) / db)) *1000) ;
-                     }
-                    break;
-                    
-                case 7:
-
-                    Double wb = 1 / (4 * Math.PI * dielectricConstant);
-
-                    for (int kk = 0; kk < distM.size(); kk++) {
-                        v = v + (wb * value.get(kk) * (1 / Math.pow(distM.get(kk), 2)) * Math.pow(10, ((distM.get(kk)*-1) / db)) * 1000);
-                    }
-                    break;                  
-            }
-            mapValue.add(v);
-        }
-        return mapValue;
+    public void setTheta(double theta) {
+        this.theta = theta;
+    }
+    
+    /*
+    * compares the projection in the current mode with the exact sum
+    */
+    public ProjectionError getProjectionError(PointSet target, PointSet source, int type, 
+                                              double minDistance, double dC, double iS) {
+        
+        Projection exact = new Projection(); 
+        return ProjectionError.compare(exact.calcProjection(target, source, type, minDistance, dC, iS), 
+                                       this.calcProjection(target, source, type, minDistance, dC, iS)); 
+    }
+    
+    public double getTolerance() {
+        return tolerance;
     }
 
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
     
-    public Double[] getVectorDistance(List<Double[]> struct, Double[] vector, Double[] centerP) {
+    public double[] getVectorDistance(PointSet struct, double[] vector, double[] centerP) {
         // gives a distance value for each point in struct list, distance measured along a vector; 
 
-        Double[] d2Point = new Double[struct.size()];
+        double[] d2Point = new double[struct.size()];
+        double n = Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1] + vector[2] * vector[2]);
 
         for (int i = 0; i < struct.size(); i++) {
 
-            Double[] nSurfPVec = new Double[3];
-            nSurfPVec[0] = struct.get(i)[0] - centerP[0];
-            nSurfPVec[1] = struct.get(i)[1] - centerP[1];
-            nSurfPVec[2] = struct.get(i)[2] - centerP[2];
-
-            Double c = 0.0;
-            nSurfPVec[0] = nSurfPVec[0] / Vector.norm(vector);
-            c = c + Math.abs(nSurfPVec[0] - vector[0]);
-            nSurfPVec[1] = nSurfPVec[1] / Vector.norm(vector);
-            c = c + Math.abs(nSurfPVec[1] - vector[1]);
-            nSurfPVec[2] = nSurfPVec[2] / Vector.norm(vector);
-            c = c + Math.abs(nSurfPVec[2] - vector[2]);
+            double c = 0.0;
+            c = c + Math.abs((struct.getX(i) - centerP[0]) / n - vector[0]);
+            c = c + Math.abs((struct.getY(i) - centerP[1]) / n - vector[1]);
+            c = c + Math.abs((struct.getZ(i) - centerP[2]) / n - vector[2]);
 
             d2Point[i] = c;
         }
@@ -197,36 +325,47 @@ public class Projection {
     /*
     * absolut distance of object points to plane
     */
-    public Double[] getAbsDistance(List<Double[]> planeP, List<Double[]> struct) {
+    public double[] getAbsDistance(PointSet planeP, PointSet struct) {
+        
+        double[] d2Plane = new double[struct.size()];
+        
+        if(planeP.isEmpty()){
+            return d2Plane; 
+        }
+        
+        // nearest neighbour index over the reference points, built once per call
+        return this.getAbsDistance(new CellList(planeP), struct);
+    }
+    
+    /*
+    * distances to the nearest point of an index built before, e.g. the
+    * surface index of Molecule.getSurfaceCellList
+    */
+    public double[] getAbsDistance(CellList cellList, PointSet struct) {
+        
+        double[] d2Plane = new double[struct.size()];
+        
+        if(cellList.size() == 0){
+            return d2Plane; 
+        }
         
-        Double[] d2Plane = new Double[struct.size()];
-        List<Double> DistA = new ArrayList<>();
         for (int i = 0; i < struct.size(); i++) {
-
-            DistA.clear();
-            
-            for (Double[] planePoint : planeP) {
-                Double b = Math.sqrt(Math.pow(struct.get(i)[0] - planePoint[0], 2) 
-                                   + Math.pow(struct.get(i)[1] - planePoint[1], 2) 
-                                   + Math.pow(struct.get(i)[2] - planePoint[2], 2));
-                DistA.add(b);
-            }
-            
-            if(DistA.size() > 1){
-            d2Plane[i] = Collections.min(DistA);
-            }
-            if(DistA.size()==1){
-                d2Plane[i] = DistA.get(0);
-            }
+            d2Plane[i] = cellList.nearestDistance(struct.getX(i), struct.getY(i), struct.getZ(i));
         }
         return d2Plane;
     }
     
-     public static Double getMinAbsDistance(List<Double[]> planeP, List<Double[]> struct) {
+     public static double getMinAbsDistance(PointSet planeP, PointSet struct) {
 
-        Projection project = new Projection(); 
-        Double[] d2Plane = project.getAbsDistance(planeP, struct);
-        Double dist = Collections.min(Arrays.asList(d2Plane));
+        CellList cellList = new CellList(planeP);
+        
+        double dist = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < struct.size(); i++) {
+            double d = cellList.nearestDistance(struct.getX(i), struct.getY(i), struct.getZ(i));
+            if (d < dist) {
+                dist = d;
+            }
+        }
         return dist;
     }
 }
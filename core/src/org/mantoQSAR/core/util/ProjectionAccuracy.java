@@ -0,0 +1,161 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.mantoQSAR.core.Molecule;
+import org.mantoQSAR.core.math.PointSet;
+
+/*
+* accuracy and run time of the approximate projection backends compared with
+* the exact direct sum. Runs on a molecule or on a synthetic charged globule:
+* java org.mantoQSAR.core.util.ProjectionAccuracy [atoms] [surface points]
+*/
+public class ProjectionAccuracy {
+
+    public static final double[] DEFAULT_THETA = new double[]{0.2, 0.3, 0.5, 0.7, 1.0};
+    public static final double[] DEFAULT_SPACING = new double[]{1.0, 2.0, 4.0};
+
+    public static List<String> compareTree(Molecule m, int type, double[] theta) {
+
+        PointSet source = m.getPropertySource("esp");
+        return ProjectionAccuracy.compareTree(m.getSurfacePoints(), source, type, theta);
+    }
+
+    public static List<String> compareTree(PointSet target, PointSet source, int type, double[] theta) {
+
+        List<String> report = new ArrayList<>();
+
+        long t0 = System.nanoTime();
+        double[] exact = new Projection().calcProjection(target, source, type, 0.0);
+        long tExact = System.nanoTime() - t0;
+
+        report.add(String.format("map function %d, %d sources, %d targets, direct sum %.1f ms",
+                type, source.size(), target.size(), tExact * 1e-6));
+
+        for (double th : theta) {
+
+            Projection p = new Projection();
+            p.setBackend(Projection.BACKEND_TREE);
+            p.setTheta(th);
+
+            t0 = System.nanoTime();
+            double[] approx = p.calcProjection(target, source, type, 0.0);
+            long tTree = System.nanoTime() - t0;
+
+            ProjectionError err = ProjectionError.compare(exact, approx);
+            report.add(String.format("  theta %.2f: %.1f ms, rel. max error %.2e, rel. rms error %.2e",
+                    th, tTree * 1e-6, err.getRelativeMaxError(), err.getRelativeRmsError()));
+        }
+        return report;
+    }
+
+    /*
+    * potential grid with the given spacings around the targets compared with the
+    * direct sum
+    */
+    public static List<String> compareGrid(PointSet target, PointSet source, int type, double[] spacing) {
+
+        List<String> report = new ArrayList<>();
+
+        long t0 = System.nanoTime();
+        double[] exact = new Projection().calcProjection(target, source, type, 0.0);
+        long tExact = System.nanoTime() - t0;
+
+        report.add(String.format("map function %d, %d sources, %d targets, direct sum %.1f ms",
+                type, source.size(), target.size(), tExact * 1e-6));
+
+        for (double h : spacing) {
+
+            t0 = System.nanoTime();
+            PotentialGrid grid = PotentialGrid.around(target, h, source, new Projection(), MapFunctions.getName(type), 0.0,
+                    Projection.DEFAULT_DIELECTRIC_CONSTANT, Projection.DEFAULT_IONIC_STRENGTH, h);
+            long tGrid = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            double[] approx = grid.sample(target);
+            long tSample = System.nanoTime() - t0;
+
+            ProjectionError err = ProjectionError.compare(exact, approx);
+            report.add(String.format("  spacing %.2f: %d nodes, grid %.1f ms, sampling %.1f ms, "
+                    + "rel. max error %.2e, rel. rms error %.2e",
+                    h, grid.getNodeCount(), tGrid * 1e-6, tSample * 1e-6,
+                    err.getRelativeMaxError(), err.getRelativeRmsError()));
+        }
+        return report;
+    }
+
+    /*
+    * random atoms with partial charges in a globule and points on an
+    * enclosing shell
+    */
+    public static PointSet[] getSyntheticSystem(int nAtom, int nSurface, long seed) {
+
+        Random r = new Random(seed);
+        double radius = 3.0 * Math.cbrt(nAtom);
+
+        PointSet atoms = new PointSet(nAtom);
+        double[] charge = new double[nAtom];
+        for (int i = 0; i < nAtom; i++) {
+            double[] p = ProjectionAccuracy.randomDirection(r);
+            double d = radius * Math.cbrt(r.nextDouble());
+            atoms.set(i, p[0] * d, p[1] * d, p[2] * d);
+            charge[i] = r.nextGaussian() * 0.4;
+        }
+        atoms.setValue(charge);
+
+        PointSet surface = new PointSet(nSurface);
+        for (int i = 0; i < nSurface; i++) {
+            double[] p = ProjectionAccuracy.randomDirection(r);
+            double d = radius + 1.4 + r.nextDouble() * 2.0;
+            surface.set(i, p[0] * d, p[1] * d, p[2] * d);
+        }
+        return new PointSet[]{surface, atoms};
+    }
+
+    private static double[] randomDirection(Random r) {
+
+        double[] p = new double[]{r.nextGaussian(), r.nextGaussian(), r.nextGaussian()};
+        double n = Math.sqrt(p[0] * p[0] + p[1] * p[1] + p[2] * p[2]);
+        return new double[]{p[0] / n, p[1] / n, p[2] / n};
+    }
+
+    public static void main(String[] args) {
+
+        int nAtom = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        int nSurface = (args.length > 1) ? Integer.parseInt(args[1]) : 30000;
+
+        PointSet[] system = ProjectionAccuracy.getSyntheticSystem(nAtom, nSurface, 1L);
+
+        for (int type : new int[]{0, 5}) {
+            for (String line : ProjectionAccuracy.compareTree(system[0], system[1], type, DEFAULT_THETA)) {
+                System.out.println(line);
+            }
+        }
+        for (String line : ProjectionAccuracy.compareGrid(system[0], system[1], 0, DEFAULT_SPACING)) {
+            System.out.println(line);
+        }
+    }
+}
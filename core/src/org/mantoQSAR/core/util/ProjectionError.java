@@ -0,0 +1,99 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+/*
+* deviation of an approximated projection from the exact sum
+*/
+public class ProjectionError {
+
+    private final int count;
+    private final double maxError;
+    private final double rmsError;
+    private final double maxValue;
+    private final double rmsValue;
+
+    public ProjectionError(int count, double maxError, double rmsError, double maxValue, double rmsValue) {
+        this.count = count;
+        this.maxError = maxError;
+        this.rmsError = rmsError;
+        this.maxValue = maxValue;
+        this.rmsValue = rmsValue;
+    }
+
+    public static ProjectionError compare(double[] exact, double[] approx) {
+
+        if (exact.length != approx.length) {
+            throw new IllegalArgumentException("Projections differ in length.");
+        }
+
+        double maxE = 0.0;
+        double sumE = 0.0;
+        double maxV = 0.0;
+        double sumV = 0.0;
+
+        for (int i = 0; i < exact.length; i++) {
+            double e = Math.abs(approx[i] - exact[i]);
+            maxE = Math.max(maxE, e);
+            sumE = sumE + e * e;
+            maxV = Math.max(maxV, Math.abs(exact[i]));
+            sumV = sumV + exact[i] * exact[i];
+        }
+
+        int n = exact.length;
+        return new ProjectionError(n, maxE, Math.sqrt(sumE / n), maxV, Math.sqrt(sumV / n));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMaxError() {
+        return maxError;
+    }
+
+    public double getRmsError() {
+        return rmsError;
+    }
+
+    /*
+    * maximum error relative to the largest exact value
+    */
+    public double getRelativeMaxError() {
+        return maxError / maxValue;
+    }
+
+    /*
+    * rms error relative to the rms of the exact values
+    */
+    public double getRelativeRmsError() {
+        return rmsError / rmsValue;
+    }
+
+    @Override
+    public String toString() {
+        return "projection error for " + count + " points: "
+                + "max " + maxError + " (rel. " + this.getRelativeMaxError() + "), "
+                + "rms " + rmsError + " (rel. " + this.getRelativeRmsError() + ")";
+    }
+}
@@ -0,0 +1,260 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.mantoQSAR.core.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.Structure;
+import org.mantoQSAR.core.math.PointSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+* content addressed on-disk store of surface points. Files are named by a hash
+* of the structure coordinates and the surface settings; least recently used
+* files are removed when the cache grows beyond its size limit.
+*/
+public class SurfaceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SurfaceCache.class);
+
+    private static final int MAGIC = 0x6D515346;    // "mQSF"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".surf";
+
+    private static final Object evictLock = new Object();
+
+    private final File directory;
+    private long maxSize = 512L * 1024L * 1024L;
+
+    public SurfaceCache(File directory) {
+        this.directory = directory;
+    }
+
+    /*
+    * hash of atom coordinates, elements and surface settings
+    */
+    public static String getKey(Structure structure, double resolution, double probeRadius, String typeOfSurface) {
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            logger.error(ex.getMessage());
+            return null;
+        }
+
+        byte[] buffer = new byte[8];
+        for (Chain c : structure.getModel(0)) {
+            for (Group g : c.getAtomGroups()) {
+                md.update(g.isWater() ? (byte) 1 : (byte) 0);
+                for (Atom a : g.getAtoms()) {
+                    if (a.getElement() != null) {
+                        md.update(a.getElement().name().getBytes(StandardCharsets.UTF_8));
+                    }
+                    for (double d : a.getCoords()) {
+                        SurfaceCache.update(md, buffer, Double.doubleToLongBits(d));
+                    }
+                }
+            }
+        }
+
+        SurfaceCache.update(md, buffer, Double.doubleToLongBits(resolution));
+        SurfaceCache.update(md, buffer, Double.doubleToLongBits(probeRadius));
+        md.update(String.valueOf(typeOfSurface).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest md, byte[] buffer, long v) {
+        for (int i = 0; i < 8; i++) {
+            buffer[i] = (byte) (v >>> (8 * i));
+        }
+        md.update(buffer);
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    /*
+    * cached surface for key, null if not available
+    */
+    public PointSet get(String key) {
+
+        if (key == null) {
+            return null;
+        }
+
+        File f = this.getFile(key);
+        if (!f.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("Surface cache file " + f.getName() + " has unknown format.");
+                return null;
+            }
+
+            int n = in.readInt();
+            PointSet surface = new PointSet(n);
+            for (int i = 0; i < n; i++) {
+                surface.set(i, in.readFloat(), in.readFloat(), in.readFloat());
+            }
+
+            // mark as recently used
+            f.setLastModified(System.currentTimeMillis());
+            return surface;
+
+        } catch (IOException ex) {
+            logger.error("Reading surface cache file " + f.getName() + " failed. " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /*
+    * stores surface under key and returns the surface as it will be read back
+    * from the cache, so computed and cached surfaces give identical results
+    */
+    public PointSet put(String key, PointSet surface) {
+
+        PointSet stored = new PointSet(surface.size());
+        for (int i = 0; i < surface.size(); i++) {
+            stored.set(i, (float) surface.getX(i), (float) surface.getY(i), (float) surface.getZ(i));
+        }
+
+        if (key == null) {
+            return stored;
+        }
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.error("Surface cache directory " + directory + " could not be created.");
+            return stored;
+        }
+
+        File f = this.getFile(key);
+        File tmp = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(stored.size());
+                for (int i = 0; i < stored.size(); i++) {
+                    out.writeFloat((float) stored.getX(i));
+                    out.writeFloat((float) stored.getY(i));
+                    out.writeFloat((float) stored.getZ(i));
+                }
+            }
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException ex) {
+            logger.error("Writing surface cache file " + f.getName() + " failed. " + ex.getMessage());
+            tmp.delete();
+            return stored;
+        }
+
+        this.evict();
+        return stored;
+    }
+
+    /*
+    * removes least recently used files until the cache fits its size limit
+    */
+    public void evict() {
+
+        synchronized (evictLock) {
+
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+            if (files == null) {
+                return;
+            }
+
+            long total = 0;
+            for (File f : files) {
+                total += f.length();
+            }
+
+            if (total <= maxSize) {
+                return;
+            }
+
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File f : files) {
+                if (total <= maxSize) {
+                    break;
+                }
+                long length = f.length();
+                if (f.delete()) {
+                    total -= length;
+                    logger.info("Surface cache file " + f.getName() + " removed.");
+                }
+            }
+        }
+    }
+
+    public void clear() {
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            f.delete();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,105 @@
+/* This file is part of mantoQSAR.
+
+mantoQSAR - Quantitative structure-activity relationship descriptor
+			calculation and modeling for biomolecules.
+
+Copyright (C) 2016  Jörg Kittelmann
+
+
+mantoQSAR is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License,
+or any later version.
+
+mantoQSAR is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with mantoQSAR. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.mantoQSAR.core.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/*
+* values by key, each calculated once and tagged with the version of the data
+* it was derived from. The calculation runs outside the map, concurrent callers
+* of the same key wait for it while other keys are not blocked. Values of an
+* older version are neither returned to new callers nor kept in the map.
+*/
+public class VersionedMap<T> {
+
+    private final LongSupplier version;
+    private final Map<String, Entry<T>> map = new ConcurrentHashMap<>();
+
+    private static class Entry<T> {
+
+        final long version;
+        final Memoized<T> value;
+
+        Entry(long version, Memoized<T> value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    public VersionedMap(LongSupplier version) {
+        this.version = version;
+    }
+
+    /*
+    * value stored under key, calculated by calc if missing or outdated
+    */
+    public T get(String key, Function<String, T> calc) {
+
+        while (true) {
+            long current = version.getAsLong();
+            Entry<T> e = map.computeIfAbsent(key, (k) -> new Entry<>(current, new Memoized<>(() -> calc.apply(k))));
+
+            if (e.version != current) {
+                map.remove(key, e);
+                continue;
+            }
+
+            T value = e.value.get();
+            if (version.getAsLong() != current) {
+                // the data changed during the calculation
+                map.remove(key, e);
+            }
+            return value;
+        }
+    }
+
+    /*
+    * stores a value calculated elsewhere for the given version, unless the key
+    * is present or the version is outdated
+    */
+    public void putIfAbsent(String key, long valueVersion, T value) {
+
+        Entry<T> e = new Entry<>(valueVersion, new Memoized<>(() -> value));
+        if (valueVersion == version.getAsLong() && map.putIfAbsent(key, e) == null 
+                && version.getAsLong() != valueVersion) {
+            map.remove(key, e);
+        }
+    }
+
+    /*
+    * true if a value of the current version is stored or being calculated
+    */
+    public boolean containsKey(String key) {
+
+        Entry<T> e = map.get(key);
+        return e != null && e.version == version.getAsLong();
+    }
+
+    public void clear() {
+        map.clear();
+    }
+}
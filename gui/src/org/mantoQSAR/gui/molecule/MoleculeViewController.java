@@ -33,7 +33,6 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
 import java.util.List;
 import javax.swing.BoxLayout;
 import javax.swing.JComboBox;
@@ -42,8 +41,8 @@ import javax.swing.JPanel;
 import javax.swing.border.TitledBorder;
 import org.jdesktop.swingx.JXCollapsiblePane;
 import org.mantoQSAR.core.Screen;
-import org.mantoQSAR.core.descriptor.Descriptor;
 import org.mantoQSAR.core.descriptor.OrientationDescriptorGroup;
+import org.mantoQSAR.core.descriptor.OrientationDetail;
 import org.mantoQSAR.core.descriptor.PlaneDescriptorGroup;
 import org.mantoQSAR.core.util.ColorStatic;
 import org.openscience.jmol.app.jmolpanel.console.AppConsole;
@@ -179,9 +178,9 @@ public class MoleculeViewController extends JPanel implements PropertyChangeList
 
         int n = this.screen.getDescriptorPositionInGroup(this.moleculeControl.getActivePosition(), this.moleculeControl.getActiveDescriptor());
         
+        OrientationDetail detail = oDG.getDetail();
+        
         for(int i = 0; i < nOrientation; i++){
-            Descriptor d = oDG.getDescriptor().get(n);
-            ArrayList<ArrayList<Descriptor>> descriptorDetail = oDG.getDescriptorDetail();
             
             Double y = vector.get(i)[1]*90;
             Double x = 0.0; 
@@ -203,7 +202,7 @@ public class MoleculeViewController extends JPanel implements PropertyChangeList
             
             String s = (i+1) + ": "  + String.format("%.2g%n",  x) + " " 
                                      + String.format("%.2g%n",  y) + "\t "
-                                     + String.format("%.4g%n",  descriptorDetail.get(i).get(n).getValue());
+                                     + String.format("%.4g%n",  detail.get(i, n));
 
             comboBox.addItem(s);  
             System.out.println(ColorStatic.PURPLE + s + ColorStatic.RESET);